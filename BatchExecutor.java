@@ -0,0 +1,460 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs many small noiseless circuits of the same width side by side.
+ *
+ * Circuits are grouped into batches of batchSize lanes whose state vectors are stored
+ * structure-of-arrays, re[index * lanes + lane], so every kernel's innermost loop runs over
+ * lanes on contiguous memory. At each gate position the lanes are grouped by the gate's
+ * canonical form and every group is updated in one pass: matrix gates and the diffusion
+ * operator have batched kernels, permutation gates move whole lane slices, and anything
+ * else runs per lane through a strided view of that lane. Batches run in parallel.
+ *
+ * The lane loops of the matrix and diffusion kernels go through {@link HeapKernels} when the
+ * Vector API kernels are loaded, and run as scalar loops otherwise; both round identically.
+ */
+public class BatchExecutor {
+    public static final int MAX_QUBITS = 20;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    // Lanes transposed out together: eight doubles fill one cache line of the block
+    private static final int EXTRACT_LANES = 8;
+    private static final HeapKernels KERNELS = HeapStateVector.VECTOR_KERNELS;
+
+    private final int batchSize;
+    private final ParallelExecution batchExecution;
+
+    public BatchExecutor() {
+        this(DEFAULT_BATCH_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public BatchExecutor(int batchSize, ForkJoinPool pool) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+        this.batchExecution = new ParallelExecution(pool, 1);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Runs every circuit on |0...0> and returns the final states in input order.
+     */
+    public List<StateVector> run(List<QuantumCircuit> circuits) {
+        StateVector[] results = new StateVector[circuits.size()];
+        run(circuits, (index, state) -> {
+            HeapStateVector copy = new HeapStateVector(state.getNumberOfQubits());
+            System.arraycopy(((HeapStateVector) state).getAmplitudes(), 0, copy.getAmplitudes(), 0,
+                    copy.getAmplitudes().length);
+            results[index] = copy;
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Runs every circuit on |0...0> and hands each final state to the consumer, which may be
+     * called concurrently from pool threads. The state passed in is scratch space and is
+     * overwritten once the call returns.
+     */
+    public void run(List<QuantumCircuit> circuits, ResultConsumer consumer) {
+        if (circuits.isEmpty()) {
+            return;
+        }
+        int numberOfQubits = circuits.get(0).getNumberOfQubits();
+        if (numberOfQubits > MAX_QUBITS || ((long) batchSize << numberOfQubits) > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Batched circuits hold at most " + MAX_QUBITS + " qubits.");
+        }
+        List<List<QuantumGate>> programs = new ArrayList<>(circuits.size());
+        for (QuantumCircuit circuit : circuits) {
+            if (circuit.getNumberOfQubits() != numberOfQubits) {
+                throw new IllegalArgumentException("All circuits must have the same number of qubits.");
+            }
+            if (!circuit.getNoiseModels().isEmpty()) {
+                throw new IllegalArgumentException("Noisy circuits must run through TrajectorySimulator.");
+            }
+            programs.add(circuit.compile());
+        }
+        Map<String, PermutationTable> permutationTables = new ConcurrentHashMap<>();
+        int batches = (circuits.size() + batchSize - 1) / batchSize;
+        batchExecution.forEachChunk(batches, (batch, from, to) -> {
+            int first = batch * batchSize;
+            int lanes = Math.min(batchSize, circuits.size() - first);
+            Block block = new Block(numberOfQubits, lanes, permutationTables);
+            block.run(programs.subList(first, first + lanes));
+            HeapStateVector[] scratch = new HeapStateVector[Math.min(lanes, EXTRACT_LANES)];
+            for (int i = 0; i < scratch.length; i++) {
+                scratch[i] = new HeapStateVector(numberOfQubits);
+            }
+            for (int lane = 0; lane < lanes; lane += scratch.length) {
+                int count = Math.min(scratch.length, lanes - lane);
+                block.load(lane, count, scratch);
+                for (int i = 0; i < count; i++) {
+                    consumer.accept(first + lane + i, scratch[i]);
+                }
+            }
+        });
+    }
+
+    public interface ResultConsumer {
+        void accept(int circuitIndex, StateVector state);
+    }
+
+    /**
+     * State vectors of one batch, lane-interleaved.
+     */
+    private static final class Block {
+        private final int numberOfQubits;
+        private final int dimension;
+        private final int lanes;
+        private final double[] re;
+        private final double[] im;
+        private final Map<String, PermutationTable> permutationTables;
+        private LaneView laneView;
+
+        Block(int numberOfQubits, int lanes, Map<String, PermutationTable> permutationTables) {
+            this.numberOfQubits = numberOfQubits;
+            this.dimension = 1 << numberOfQubits;
+            this.lanes = lanes;
+            this.re = new double[dimension * lanes];
+            this.im = new double[dimension * lanes];
+            this.permutationTables = permutationTables;
+            Arrays.fill(re, 0, lanes, 1.0);
+        }
+
+        void run(List<List<QuantumGate>> programs) {
+            int steps = 0;
+            for (List<QuantumGate> program : programs) {
+                steps = Math.max(steps, program.size());
+            }
+            Object[] keys = new Object[lanes];
+            for (int step = 0; step < steps; step++) {
+                boolean uniform = true;
+                for (int lane = 0; lane < lanes; lane++) {
+                    List<QuantumGate> program = programs.get(lane);
+                    if (step >= program.size()) {
+                        keys[lane] = null;
+                        uniform = false;
+                        continue;
+                    }
+                    QuantumGate gate = program.get(step);
+                    String form = gate.getCanonicalForm();
+                    keys[lane] = form != null ? form : gate;
+                    uniform &= keys[lane].equals(keys[0]);
+                }
+                if (uniform) {
+                    // The common case in a sweep: every lane runs the same gate
+                    apply(programs.get(0).get(step), formOf(keys[0]), 0, lanes);
+                    continue;
+                }
+                Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+                for (int lane = 0; lane < lanes; lane++) {
+                    if (keys[lane] != null) {
+                        groups.computeIfAbsent(keys[lane], key -> new ArrayList<>()).add(lane);
+                    }
+                }
+                for (Map.Entry<Object, List<Integer>> group : groups.entrySet()) {
+                    List<Integer> members = group.getValue();
+                    QuantumGate gate = programs.get(members.get(0)).get(step);
+                    int runStart = 0;
+                    for (int m = 1; m <= members.size(); m++) {
+                        if (m == members.size() || members.get(m) != members.get(m - 1) + 1) {
+                            apply(gate, formOf(group.getKey()), members.get(runStart), members.get(m - 1) + 1);
+                            runStart = m;
+                        }
+                    }
+                }
+            }
+        }
+
+        private static String formOf(Object key) {
+            return key instanceof String ? (String) key : null;
+        }
+
+        private void apply(QuantumGate gate, String form, int from, int to) {
+            PermutationTable table = permutationTable(gate, form);
+            if (table != null) {
+                applyPermutation(table, from, to);
+            } else if (gate instanceof MatrixGate) {
+                MatrixGate matrixGate = (MatrixGate) gate;
+                int[] qubits = matrixGate.getQubits();
+                if (qubits.length == 1) {
+                    applySingleQubit(qubits[0], matrixGate.getMatrix(), from, to);
+                } else {
+                    applyMatrix(qubits, matrixGate.getMatrix(), from, to);
+                }
+            } else if (gate instanceof GroverDiffusionOperator) {
+                applyDiffusion(from, to);
+            } else {
+                if (laneView == null) {
+                    laneView = new LaneView(this);
+                }
+                for (int lane = from; lane < to; lane++) {
+                    laneView.lane = lane;
+                    gate.apply(laneView);
+                }
+            }
+        }
+
+        private PermutationTable permutationTable(QuantumGate gate, String form) {
+            if (!(gate instanceof PermutationGate) || !((PermutationGate) gate).isPermutationOf(numberOfQubits)) {
+                return null;
+            }
+            if (form == null) {
+                return PermutationTable.build((PermutationGate) gate, dimension);
+            }
+            return permutationTables.computeIfAbsent(numberOfQubits + ":" + form,
+                    key -> PermutationTable.build((PermutationGate) gate, dimension));
+        }
+
+        private void applyPermutation(PermutationTable table, int from, int to) {
+            double[] carry = new double[to - from];
+            table.apply(re, lanes, from, to - from, carry);
+            table.apply(im, lanes, from, to - from, carry);
+        }
+
+        private void applySingleQubit(int target, double[] matrix, int from, int to) {
+            double u00r = matrix[0], u00i = matrix[1], u01r = matrix[2], u01i = matrix[3];
+            double u10r = matrix[4], u10i = matrix[5], u11r = matrix[6], u11i = matrix[7];
+            int width = to - from;
+            int stride = (1 << target) * lanes;
+            for (int pair = 0; pair < dimension >> 1; pair++) {
+                int p = StateVector.insertZeroBit(pair, target) * lanes + from;
+                int q = p + stride;
+                if (KERNELS != null) {
+                    KERNELS.rotateLanes(re, im, p, q, width, matrix);
+                    continue;
+                }
+                for (int l = 0; l < width; l++) {
+                    double ar = re[p + l], ai = im[p + l];
+                    double br = re[q + l], bi = im[q + l];
+                    re[p + l] = u00r * ar - u00i * ai + u01r * br - u01i * bi;
+                    im[p + l] = u00r * ai + u00i * ar + u01r * bi + u01i * br;
+                    re[q + l] = u10r * ar - u10i * ai + u11r * br - u11i * bi;
+                    im[q + l] = u10r * ai + u10i * ar + u11r * bi + u11i * br;
+                }
+            }
+        }
+
+        /**
+         * Dense 2^k x 2^k unitary on lanes [from, to): the 2^k input slices of each basis
+         * group are copied out, then every output slice is rebuilt as a sum of scaled inputs.
+         */
+        private void applyMatrix(int[] qubits, double[] matrix, int from, int to) {
+            int k = qubits.length;
+            int size = 1 << k;
+            int width = to - from;
+            int[] sorted = qubits.clone();
+            Arrays.sort(sorted);
+            int[] offsets = new int[size];
+            for (int c = 0; c < size; c++) {
+                for (int bit = 0; bit < k; bit++) {
+                    if ((c & (1 << bit)) != 0) {
+                        offsets[c] |= 1 << qubits[bit];
+                    }
+                }
+            }
+            double[] inRe = new double[size * width];
+            double[] inIm = new double[size * width];
+            int groups = dimension >> k;
+            for (int group = 0; group < groups; group++) {
+                int base = group;
+                for (int qubit : sorted) {
+                    base = StateVector.insertZeroBit(base, qubit);
+                }
+                for (int c = 0; c < size; c++) {
+                    int source = (base | offsets[c]) * lanes + from;
+                    System.arraycopy(re, source, inRe, c * width, width);
+                    System.arraycopy(im, source, inIm, c * width, width);
+                }
+                for (int r = 0; r < size; r++) {
+                    int target = (base | offsets[r]) * lanes + from;
+                    Arrays.fill(re, target, target + width, 0.0);
+                    Arrays.fill(im, target, target + width, 0.0);
+                    for (int c = 0; c < size; c++) {
+                        double mr = matrix[(r * size + c) << 1];
+                        double mi = matrix[((r * size + c) << 1) + 1];
+                        if (mr == 0.0 && mi == 0.0) {
+                            continue;
+                        }
+                        int input = c * width;
+                        if (KERNELS != null) {
+                            KERNELS.accumulateLanes(re, im, target, inRe, inIm, input, width, mr, mi);
+                            continue;
+                        }
+                        for (int l = 0; l < width; l++) {
+                            double ar = inRe[input + l];
+                            double ai = inIm[input + l];
+                            re[target + l] += mr * ar - mi * ai;
+                            im[target + l] += mr * ai + mi * ar;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void applyDiffusion(int from, int to) {
+            int width = to - from;
+            double[] sumRe = new double[width];
+            double[] sumIm = new double[width];
+            for (int index = 0; index < dimension; index++) {
+                int p = index * lanes + from;
+                if (KERNELS != null) {
+                    KERNELS.addLanes(sumRe, re, p, width);
+                    KERNELS.addLanes(sumIm, im, p, width);
+                    continue;
+                }
+                for (int l = 0; l < width; l++) {
+                    sumRe[l] += re[p + l];
+                    sumIm[l] += im[p + l];
+                }
+            }
+            for (int l = 0; l < width; l++) {
+                sumRe[l] = 2 * (sumRe[l] / dimension);
+                sumIm[l] = 2 * (sumIm[l] / dimension);
+            }
+            for (int index = 0; index < dimension; index++) {
+                int p = index * lanes + from;
+                if (KERNELS != null) {
+                    KERNELS.reflectLanes(sumRe, re, p, width);
+                    KERNELS.reflectLanes(sumIm, im, p, width);
+                    continue;
+                }
+                for (int l = 0; l < width; l++) {
+                    re[p + l] = sumRe[l] - re[p + l];
+                    im[p + l] = sumIm[l] - im[p + l];
+                }
+            }
+        }
+
+        void load(int firstLane, int count, HeapStateVector[] states) {
+            for (int index = 0; index < dimension; index++) {
+                int p = index * lanes + firstLane;
+                for (int i = 0; i < count; i++) {
+                    double[] amplitudes = states[i].getAmplitudes();
+                    amplitudes[index << 1] = re[p + i];
+                    amplitudes[(index << 1) + 1] = im[p + i];
+                }
+            }
+        }
+
+        void load(int lane, HeapStateVector state) {
+            double[] amplitudes = state.getAmplitudes();
+            for (int index = 0; index < dimension; index++) {
+                amplitudes[index << 1] = re[index * lanes + lane];
+                amplitudes[(index << 1) + 1] = im[index * lanes + lane];
+            }
+        }
+
+        void store(HeapStateVector state, int lane) {
+            double[] amplitudes = state.getAmplitudes();
+            for (int index = 0; index < dimension; index++) {
+                re[index * lanes + lane] = amplitudes[index << 1];
+                im[index * lanes + lane] = amplitudes[(index << 1) + 1];
+            }
+        }
+    }
+
+    /**
+     * One lane of a block seen as a state vector. Element access and the reductions work on
+     * the strided lane directly, so sparse gates such as oracles stay O(touched amplitudes);
+     * dense kernels run on a heap copy of the lane.
+     */
+    private static final class LaneView extends StateVector {
+        private final Block block;
+        private final HeapStateVector scratch;
+        private int lane;
+
+        LaneView(Block block) {
+            super(block.numberOfQubits);
+            this.block = block;
+            this.scratch = new HeapStateVector(block.numberOfQubits);
+        }
+
+        @Override
+        public double getReal(long index) {
+            return block.re[(int) index * block.lanes + lane];
+        }
+
+        @Override
+        public double getImaginary(long index) {
+            return block.im[(int) index * block.lanes + lane];
+        }
+
+        @Override
+        public void set(long index, double re, double im) {
+            block.re[(int) index * block.lanes + lane] = re;
+            block.im[(int) index * block.lanes + lane] = im;
+        }
+
+        @Override
+        public void fill(double re, double im) {
+            for (int p = lane; p < block.re.length; p += block.lanes) {
+                block.re[p] = re;
+                block.im[p] = im;
+            }
+        }
+
+        @Override
+        public double norm() {
+            double sum = 0.0;
+            for (int p = lane; p < block.re.length; p += block.lanes) {
+                sum += block.re[p] * block.re[p] + block.im[p] * block.im[p];
+            }
+            return Math.sqrt(sum);
+        }
+
+        @Override
+        public double[] sum() {
+            double sumRe = 0.0;
+            double sumIm = 0.0;
+            for (int p = lane; p < block.re.length; p += block.lanes) {
+                sumRe += block.re[p];
+                sumIm += block.im[p];
+            }
+            return new double[] {sumRe, sumIm};
+        }
+
+        @Override
+        public void reflectAbout(double meanRe, double meanIm) {
+            for (int p = lane; p < block.re.length; p += block.lanes) {
+                block.re[p] = 2 * meanRe - block.re[p];
+                block.im[p] = 2 * meanIm - block.im[p];
+            }
+        }
+
+        @Override
+        public void applyControlled(long controlMask, int target, double[] matrix) {
+            block.load(lane, scratch);
+            scratch.applyControlled(controlMask, target, matrix);
+            block.store(scratch, lane);
+        }
+
+        @Override
+        public void applyMatrix(int[] qubits, double[] matrix) {
+            block.load(lane, scratch);
+            scratch.applyMatrix(qubits, matrix);
+            block.store(scratch, lane);
+        }
+
+        @Override
+        public void applyQft(int registerQubits, boolean inverse) {
+            block.load(lane, scratch);
+            scratch.applyQft(registerQubits, inverse);
+            block.store(scratch, lane);
+        }
+    }
+}
@@ -4,7 +4,7 @@
 
 package com.quantumcomputing;
 
-public class CNOTGate extends QuantumGate {
+public class CNOTGate extends MatrixGate implements PermutationGate {
     private int controlQubit;
     private int targetQubit;
 
@@ -15,9 +15,33 @@ public class CNOTGate extends QuantumGate {
     }
 
     @Override
-    public void apply(double[] stateVector) {
-        // Implementation of CNOT gate application
-        // Specific implementation for CNOT gate
+    public void apply(StateVector stateVector) {
+        stateVector.applyControlledNot(1L << controlQubit, targetQubit);
+    }
+
+    @Override
+    public long permute(long index) {
+        return (index & (1L << controlQubit)) != 0 ? index ^ (1L << targetQubit) : index;
+    }
+
+    @Override
+    public int[] getQubits() {
+        return new int[] {controlQubit, targetQubit};
+    }
+
+    @Override
+    public double[] getMatrix() {
+        return MatrixGate.controlled(1, PauliXGate.MATRIX);
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return true;
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "CNOT(" + controlQubit + ", " + targetQubit + ")";
     }
 
     public int getControlQubit() {
@@ -0,0 +1,303 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * State vector split over buffers of 2^26 amplitudes (1 GiB each) outside the Java heap.
+ *
+ * Kernels stream the buffers in tiles of 2^12 amplitudes. A gate touching qubits above the
+ * tile size gathers the 2^k tiles that differ only in those qubits into a small heap scratch
+ * vector, remaps the qubits onto it and runs the regular heap kernel there. Every amplitude
+ * is therefore read and written once per gate in sequential 64 KiB runs.
+ */
+public abstract class ChunkedStateVector extends StateVector {
+    public static final int MAX_QUBITS = 40;
+    static final int CHUNK_QUBITS = 26;
+    static final int TILE_QUBITS = 12;
+
+    protected final int chunkQubits;
+    protected final int tileQubits;
+    protected final DoubleBuffer[] chunks;
+
+    protected ChunkedStateVector(int numberOfQubits) {
+        super(numberOfQubits);
+        if (numberOfQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException("Off-heap state vectors hold at most " + MAX_QUBITS + " qubits.");
+        }
+        this.chunkQubits = Math.min(CHUNK_QUBITS, numberOfQubits);
+        this.tileQubits = Math.min(TILE_QUBITS, numberOfQubits);
+        this.chunks = new DoubleBuffer[(int) (dimension >>> chunkQubits)];
+    }
+
+    protected long chunkBytes() {
+        return (1L << chunkQubits) * 2 * Double.BYTES;
+    }
+
+    @Override
+    public double getReal(long index) {
+        return chunks[(int) (index >>> chunkQubits)].get(offset(index));
+    }
+
+    @Override
+    public double getImaginary(long index) {
+        return chunks[(int) (index >>> chunkQubits)].get(offset(index) + 1);
+    }
+
+    @Override
+    public void set(long index, double re, double im) {
+        DoubleBuffer chunk = chunks[(int) (index >>> chunkQubits)];
+        int offset = offset(index);
+        chunk.put(offset, re);
+        chunk.put(offset + 1, im);
+    }
+
+    @Override
+    public void fill(double re, double im) {
+        forEachTile(true, (first, values) -> {
+            for (int p = 0; p < values.length; p += 2) {
+                values[p] = re;
+                values[p + 1] = im;
+            }
+        });
+    }
+
+    @Override
+    public double norm() {
+        double[] total = accumulate(1, (first, values, partial) -> {
+            for (double value : values) {
+                partial[0] += value * value;
+            }
+        });
+        return Math.sqrt(total[0]);
+    }
+
+    @Override
+    public void applyControlled(long controlMask, int target, double[] matrix) {
+        checkControls(controlMask, target);
+        checkMatrix(matrix, 2);
+        applyTiled(new int[] {target}, controlMask,
+                (tile, local, localControls) -> tile.applyControlled(localControls, local[0], matrix));
+    }
+
+    @Override
+    public void applyControlledNot(long controlMask, int target) {
+        checkControls(controlMask, target);
+        applyTiled(new int[] {target}, controlMask,
+                (tile, local, localControls) -> tile.applyControlledNot(localControls, local[0]));
+    }
+
+    @Override
+    public void applyMatrix(int[] qubits, double[] matrix) {
+        checkQubits(qubits);
+        checkMatrix(matrix, 1 << qubits.length);
+        applyTiled(qubits, 0L, (tile, local, localControls) -> tile.applyMatrix(local, matrix));
+    }
+
+    /**
+     * Registers that fit in a tile use the heap butterfly per tile. Larger registers use the
+     * textbook decomposition with the controlled phases of each target folded into a single
+     * diagonal pass, which keeps the cost at O(m) streaming passes.
+     */
+    @Override
+    public void applyQft(int registerQubits, boolean inverse) {
+        checkRegister(registerQubits);
+        if (registerQubits <= tileQubits) {
+            applyTiled(new int[0], 0L, (tile, local, localControls) -> tile.applyQft(registerQubits, inverse));
+            return;
+        }
+        if (inverse) {
+            swapRegister(registerQubits);
+            for (int target = 0; target < registerQubits; target++) {
+                applyRegisterPhase(target, -1.0);
+                applySingleQubit(target, HadamardGate.MATRIX);
+            }
+        } else {
+            for (int target = registerQubits - 1; target >= 0; target--) {
+                applySingleQubit(target, HadamardGate.MATRIX);
+                applyRegisterPhase(target, 1.0);
+            }
+            swapRegister(registerQubits);
+        }
+    }
+
+    @Override
+    public double[] sum() {
+        return accumulate(2, (first, values, partial) -> {
+            for (int p = 0; p < values.length; p += 2) {
+                partial[0] += values[p];
+                partial[1] += values[p + 1];
+            }
+        });
+    }
+
+    @Override
+    public void reflectAbout(double meanRe, double meanIm) {
+        double twiceRe = 2 * meanRe;
+        double twiceIm = 2 * meanIm;
+        forEachTile(true, (first, values) -> {
+            for (int p = 0; p < values.length; p += 2) {
+                values[p] = twiceRe - values[p];
+                values[p + 1] = twiceIm - values[p + 1];
+            }
+        });
+    }
+
+    /**
+     * Multiplies amplitudes with the target bit set by exp(i * sign * pi * (x mod 2^t) / 2^t),
+     * the product of all controlled phases the QFT applies to that target.
+     */
+    private void applyRegisterPhase(int target, double sign) {
+        if (target == 0) {
+            return;
+        }
+        long targetBit = 1L << target;
+        long lowMask = targetBit - 1;
+        double unit = sign * Math.PI / targetBit;
+        forEachTile(true, (first, values) -> {
+            for (int p = 0; p < values.length; p += 2) {
+                long index = first + (p >> 1);
+                if ((index & targetBit) == 0) {
+                    continue;
+                }
+                double angle = unit * (index & lowMask);
+                double cos = Math.cos(angle);
+                double sin = Math.sin(angle);
+                double re = values[p];
+                double im = values[p + 1];
+                values[p] = re * cos - im * sin;
+                values[p + 1] = re * sin + im * cos;
+            }
+        });
+    }
+
+    private void swapRegister(int registerQubits) {
+        double[] swap = {
+            1, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 1, 0, 0, 0,
+            0, 0, 1, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 1, 0
+        };
+        for (int i = 0; i < registerQubits / 2; i++) {
+            applyMatrix(new int[] {i, registerQubits - 1 - i}, swap);
+        }
+    }
+
+    private void applyTiled(int[] qubits, long controlMask, TileOperation operation) {
+        int[] local = new int[qubits.length];
+        int[] highPositions = new int[qubits.length];
+        int highCount = 0;
+        for (int j = 0; j < qubits.length; j++) {
+            if (qubits[j] < tileQubits) {
+                local[j] = qubits[j];
+            } else {
+                local[j] = tileQubits + highCount;
+                highPositions[highCount++] = qubits[j] - tileQubits;
+            }
+        }
+        int[] high = Arrays.copyOf(highPositions, highCount);
+        int[] sortedHigh = high.clone();
+        Arrays.sort(sortedHigh);
+        long tileMask = (1L << tileQubits) - 1;
+        int localControls = (int) (controlMask & tileMask);
+        long highControls = controlMask >>> tileQubits;
+        int scratchQubits = tileQubits + highCount;
+        int members = 1 << highCount;
+        int groups = (int) ((dimension >>> tileQubits) >>> highCount);
+
+        forEachRange(groups, (chunk, from, to) -> {
+            HeapStateVector scratch = new HeapStateVector(scratchQubits);
+            double[] buffer = scratch.getAmplitudes();
+            for (int group = from; group < to; group++) {
+                long base = group;
+                for (int position : sortedHigh) {
+                    base = insertZeroBit(base, position);
+                }
+                if ((base & highControls) != highControls) {
+                    continue;
+                }
+                for (int member = 0; member < members; member++) {
+                    loadTile(base | spread(member, high), buffer, member << tileQubits);
+                }
+                operation.apply(scratch, local, localControls);
+                for (int member = 0; member < members; member++) {
+                    storeTile(base | spread(member, high), buffer, member << tileQubits);
+                }
+            }
+        });
+    }
+
+    private void forEachTile(boolean write, TileVisitor visitor) {
+        int tiles = (int) (dimension >>> tileQubits);
+        forEachRange(tiles, (chunk, from, to) -> {
+            double[] values = new double[2 << tileQubits];
+            for (int tile = from; tile < to; tile++) {
+                loadTile(tile, values, 0);
+                visitor.visit((long) tile << tileQubits, values);
+                if (write) {
+                    storeTile(tile, values, 0);
+                }
+            }
+        });
+    }
+
+    private double[] accumulate(int width, TileAccumulator accumulator) {
+        int tiles = (int) (dimension >>> tileQubits);
+        int partialCount = parallelExecution == null ? 1 : parallelExecution.chunkCount(tiles);
+        double[] partials = new double[partialCount * width];
+        forEachRange(tiles, (chunk, from, to) -> {
+            double[] values = new double[2 << tileQubits];
+            double[] partial = new double[width];
+            for (int tile = from; tile < to; tile++) {
+                loadTile(tile, values, 0);
+                accumulator.accumulate((long) tile << tileQubits, values, partial);
+            }
+            System.arraycopy(partial, 0, partials, chunk * width, width);
+        });
+        double[] total = new double[width];
+        for (int i = 0; i < partials.length; i++) {
+            total[i % width] += partials[i];
+        }
+        return total;
+    }
+
+    private void loadTile(long tile, double[] buffer, int amplitudeOffset) {
+        long first = tile << tileQubits;
+        chunks[(int) (first >>> chunkQubits)].get(offset(first), buffer, amplitudeOffset << 1, 2 << tileQubits);
+    }
+
+    private void storeTile(long tile, double[] buffer, int amplitudeOffset) {
+        long first = tile << tileQubits;
+        chunks[(int) (first >>> chunkQubits)].put(offset(first), buffer, amplitudeOffset << 1, 2 << tileQubits);
+    }
+
+    private int offset(long index) {
+        return (int) (index & ((1L << chunkQubits) - 1)) << 1;
+    }
+
+    private static long spread(int member, int[] positions) {
+        long bits = 0;
+        for (int r = 0; r < positions.length; r++) {
+            if ((member & (1 << r)) != 0) {
+                bits |= 1L << positions[r];
+            }
+        }
+        return bits;
+    }
+
+    private interface TileOperation {
+        void apply(HeapStateVector tile, int[] localQubits, int localControls);
+    }
+
+    private interface TileVisitor {
+        void visit(long firstIndex, double[] values);
+    }
+
+    private interface TileAccumulator {
+        void accumulate(long firstIndex, double[] values, double[] partial);
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary form of a circuit, executed straight from a memory-mapped file.
+ *
+ * Layout (little-endian): a 32-byte header {magic, version, qubits, reserved, gate count,
+ * byte offset of the parameter table}, the gate stream, then the parameter table of 8-byte
+ * words. Each gate is a one-byte opcode followed by single-byte qubit operands and, for
+ * matrices and oracles, an index into the parameter table, where identical matrices are
+ * stored once. Phase estimation is followed by the record of its unitary.
+ *
+ * {@link #execute(StateVector)} decodes records in place and calls the state-vector kernels
+ * directly, so loading costs one mmap however many gates the circuit has.
+ */
+public final class CircuitFile {
+    static final int MAGIC = 0x52494351; // "QCIR"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    static final byte HADAMARD = 1;
+    static final byte PAULI_X = 2;
+    static final byte PAULI_Y = 3;
+    static final byte PAULI_Z = 4;
+    static final byte CNOT = 5;
+    static final byte TOFFOLI = 6;
+    static final byte MATRIX = 7;
+    static final byte QFT = 8;
+    static final byte INVERSE_QFT = 9;
+    static final byte DIFFUSION = 10;
+    static final byte PHASE_ORACLE = 11;
+    static final byte MODULAR_EXPONENTIATION = 12;
+    static final byte PHASE_ESTIMATION = 13;
+
+    private final ByteBuffer buffer;
+    private final int numberOfQubits;
+    private final long gateCount;
+    private final int parameterOffset;
+
+    private CircuitFile(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a circuit file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported circuit file version " + buffer.getInt(4) + ".");
+        }
+        this.buffer = buffer;
+        this.numberOfQubits = buffer.getInt(8);
+        this.gateCount = buffer.getLong(16);
+        long offset = buffer.getLong(24);
+        if (offset < HEADER_BYTES || offset > buffer.limit() || (buffer.limit() - offset) % Long.BYTES != 0) {
+            throw new IOException("Corrupt circuit file header.");
+        }
+        this.parameterOffset = (int) offset;
+    }
+
+    /**
+     * Maps the file read-only. The mapping stays valid after the channel is closed.
+     */
+    public static CircuitFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Circuit files are limited to 2 GiB.");
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CircuitFile(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Writes the circuit's gate list. Noise models are not part of the format; gates other
+     * than matrix gates, QFTs, diffusion, phase oracles that list their marked states,
+     * modular exponentiation and phase estimation over those are rejected.
+     */
+    public static void write(QuantumCircuit circuit, Path file) throws IOException {
+        Writer writer = new Writer(circuit.getNumberOfQubits());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.channel = channel;
+            channel.position(HEADER_BYTES);
+            for (QuantumGate gate : circuit.getGates()) {
+                writer.gate(gate);
+            }
+            writer.flush();
+            long parameterOffset = channel.position();
+            for (int i = 0; i < writer.parameterCount; i++) {
+                writer.ensure(Long.BYTES);
+                writer.out.putLong(writer.parameters[i]);
+            }
+            writer.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(circuit.getNumberOfQubits()).putInt(0);
+            header.putLong(circuit.getGates().size()).putLong(parameterOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    public int getNumberOfQubits() {
+        return numberOfQubits;
+    }
+
+    public long getGateCount() {
+        return gateCount;
+    }
+
+    /**
+     * Runs the circuit on |0...0> and returns the final state.
+     */
+    public StateVector run() {
+        StateVector state = StateVector.allocate(numberOfQubits);
+        execute(state);
+        return state;
+    }
+
+    public void execute(StateVector stateVector) {
+        if (stateVector == null || stateVector.getNumberOfQubits() != numberOfQubits) {
+            throw new IllegalArgumentException("Invalid state vector.");
+        }
+        Executor executor = new Executor(stateVector);
+        int position = HEADER_BYTES;
+        for (long g = 0; g < gateCount; g++) {
+            position = executor.execute(position);
+        }
+        if (position != parameterOffset) {
+            throw new IllegalArgumentException("Gate stream does not end at the parameter table.");
+        }
+    }
+
+    /**
+     * Decodes one record at a time against a single state. Matrices are read into scratch
+     * arrays reused per size; modular exponentiation gates are built once per record so their
+     * cycle tables survive repeated phase-estimation rounds.
+     */
+    private final class Executor {
+        private final StateVector state;
+        private final double[][] scratch = new double[StateVector.MAX_MATRIX_QUBITS + 1][];
+        private final Map<Integer, QuantumModularExponentiation> permutations = new HashMap<>();
+
+        Executor(StateVector state) {
+            this.state = state;
+        }
+
+        int execute(int position) {
+            if (position >= parameterOffset) {
+                throw new IllegalArgumentException("Gate stream ends early at byte " + position + ".");
+            }
+            byte opcode = buffer.get(position);
+            int p = position + 1;
+            switch (opcode) {
+                case HADAMARD:
+                    state.applySingleQubit(qubit(p), HadamardGate.MATRIX);
+                    return p + 1;
+                case PAULI_X:
+                    state.applyControlledNot(0L, qubit(p));
+                    return p + 1;
+                case PAULI_Y:
+                    state.applySingleQubit(qubit(p), PauliYGate.MATRIX);
+                    return p + 1;
+                case PAULI_Z:
+                    state.applySingleQubit(qubit(p), PauliZGate.MATRIX);
+                    return p + 1;
+                case CNOT:
+                    state.applyControlledNot(1L << qubit(p), qubit(p + 1));
+                    return p + 2;
+                case TOFFOLI:
+                    state.applyControlledNot((1L << qubit(p)) | (1L << qubit(p + 1)), qubit(p + 2));
+                    return p + 3;
+                case MATRIX:
+                    return matrix(p);
+                case QFT:
+                case INVERSE_QFT:
+                    state.applyQft(qubit(p), opcode == INVERSE_QFT);
+                    return p + 1;
+                case DIFFUSION: {
+                    double[] sum = state.sum();
+                    long length = state.getDimension();
+                    state.reflectAbout(sum[0] / length, sum[1] / length);
+                    return p;
+                }
+                case PHASE_ORACLE:
+                    return phaseOracle(p);
+                case MODULAR_EXPONENTIATION:
+                    permutations.computeIfAbsent(position, key -> new QuantumModularExponentiation(
+                            buffer.getInt(key + 1), buffer.getInt(key + 5), buffer.getInt(key + 9))).apply(state);
+                    return p + 12;
+                case PHASE_ESTIMATION: {
+                    int rounds = qubit(p);
+                    state.applyQft(rounds, true);
+                    int next = p + 1;
+                    for (int i = 0; i < rounds; i++) {
+                        next = execute(p + 1);
+                    }
+                    state.applyQft(rounds, false);
+                    return next;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown opcode " + opcode + " at byte " + position + ".");
+            }
+        }
+
+        private int matrix(int p) {
+            int k = qubit(p);
+            if (k < 1 || k > StateVector.MAX_MATRIX_QUBITS) {
+                throw new IllegalArgumentException("Matrix gates must act on 1 to " + StateVector.MAX_MATRIX_QUBITS + " qubits.");
+            }
+            int[] qubits = new int[k];
+            for (int j = 0; j < k; j++) {
+                qubits[j] = qubit(p + 1 + j);
+            }
+            int size = 1 << k;
+            double[] matrix = scratch[k];
+            if (matrix == null) {
+                matrix = new double[size * size * 2];
+                scratch[k] = matrix;
+            }
+            int word = parameter(buffer.getInt(p + 1 + k), matrix.length);
+            for (int i = 0; i < matrix.length; i++) {
+                matrix[i] = buffer.getDouble(word + i * Long.BYTES);
+            }
+            state.applyMatrix(qubits, matrix);
+            return p + 1 + k + 4;
+        }
+
+        private int phaseOracle(int p) {
+            int count = buffer.getInt(p + 4);
+            int word = parameter(buffer.getInt(p), count);
+            for (int i = 0; i < count; i++) {
+                long index = buffer.getLong(word + i * Long.BYTES);
+                state.set(index, -state.getReal(index), -state.getImaginary(index));
+            }
+            return p + 8;
+        }
+
+        private int qubit(int p) {
+            return buffer.get(p) & 0xFF;
+        }
+
+        private int parameter(int index, int words) {
+            long start = parameterOffset + (long) index * Long.BYTES;
+            if (index < 0 || start + (long) words * Long.BYTES > buffer.limit()) {
+                throw new IllegalArgumentException("Parameter index out of range: " + index);
+            }
+            return (int) start;
+        }
+    }
+
+    /**
+     * Streams records through a 64 KiB buffer and collects the parameter table in memory.
+     */
+    private static final class Writer {
+        private final int numberOfQubits;
+        private final ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private final Map<MatrixKey, Integer> matrices = new HashMap<>();
+        private FileChannel channel;
+        private long[] parameters = new long[64];
+        private int parameterCount;
+
+        Writer(int numberOfQubits) {
+            this.numberOfQubits = numberOfQubits;
+        }
+
+        void gate(QuantumGate gate) throws IOException {
+            ensure(1 + StateVector.MAX_MATRIX_QUBITS + 12);
+            if (gate instanceof HadamardGate) {
+                out.put(HADAMARD).put(qubit(((HadamardGate) gate).getTargetQubit()));
+            } else if (gate instanceof PauliXGate) {
+                out.put(PAULI_X).put(qubit(((PauliXGate) gate).getTargetQubit()));
+            } else if (gate instanceof PauliYGate) {
+                out.put(PAULI_Y).put(qubit(((PauliYGate) gate).getTargetQubit()));
+            } else if (gate instanceof PauliZGate) {
+                out.put(PAULI_Z).put(qubit(((PauliZGate) gate).getTargetQubit()));
+            } else if (gate instanceof CNOTGate) {
+                CNOTGate cnot = (CNOTGate) gate;
+                out.put(CNOT).put(qubit(cnot.getControlQubit())).put(qubit(cnot.getTargetQubit()));
+            } else if (gate instanceof ToffoliGate) {
+                ToffoliGate toffoli = (ToffoliGate) gate;
+                out.put(TOFFOLI).put(qubit(toffoli.getControlQubit1())).put(qubit(toffoli.getControlQubit2()))
+                        .put(qubit(toffoli.getTargetQubit()));
+            } else if (gate instanceof MatrixGate) {
+                MatrixGate matrixGate = (MatrixGate) gate;
+                int[] qubits = matrixGate.getQubits();
+                out.put(MATRIX).put((byte) qubits.length);
+                for (int q : qubits) {
+                    out.put(qubit(q));
+                }
+                out.putInt(matrix(matrixGate.getMatrix()));
+            } else if (gate instanceof QFTGate) {
+                QFTGate qft = (QFTGate) gate;
+                out.put(qft.isInverse() ? INVERSE_QFT : QFT).put(register(qft.getNumberOfQubits()));
+            } else if (gate instanceof GroverDiffusionOperator) {
+                out.put(DIFFUSION);
+            } else if (gate instanceof GroverOracle && ((GroverOracle) gate).getMarkedStates() != null) {
+                BitSet marked = ((GroverOracle) gate).getMarkedStates();
+                int start = parameterCount;
+                for (int i = marked.nextSetBit(0); i >= 0; i = marked.nextSetBit(i + 1)) {
+                    if (numberOfQubits < 31 && i >= (1 << numberOfQubits)) {
+                        break;
+                    }
+                    addParameter(i);
+                }
+                out.put(PHASE_ORACLE).putInt(start).putInt(parameterCount - start);
+            } else if (gate instanceof QuantumModularExponentiation) {
+                QuantumModularExponentiation modExp = (QuantumModularExponentiation) gate;
+                out.put(MODULAR_EXPONENTIATION).putInt(modExp.getBase()).putInt(modExp.getExponent())
+                        .putInt(modExp.getModulus());
+            } else if (gate instanceof PhaseEstimation) {
+                PhaseEstimation estimation = (PhaseEstimation) gate;
+                out.put(PHASE_ESTIMATION).put(register(estimation.getNumberOfQubits()));
+                gate(estimation.getUnitaryOperator());
+            } else {
+                throw new IllegalArgumentException("Gate cannot be serialized: " + gate.getName());
+            }
+        }
+
+        private int matrix(double[] matrix) {
+            return matrices.computeIfAbsent(new MatrixKey(matrix), key -> {
+                int start = parameterCount;
+                for (double entry : matrix) {
+                    addParameter(Double.doubleToRawLongBits(entry));
+                }
+                return start;
+            });
+        }
+
+        private void addParameter(long word) {
+            if (parameterCount == parameters.length) {
+                parameters = Arrays.copyOf(parameters, parameters.length * 2);
+            }
+            parameters[parameterCount++] = word;
+        }
+
+        private byte qubit(int qubit) {
+            if (qubit < 0 || qubit >= numberOfQubits) {
+                throw new IllegalArgumentException("Qubit index out of range: " + qubit);
+            }
+            return (byte) qubit;
+        }
+
+        private byte register(int registerQubits) {
+            if (registerQubits <= 0 || registerQubits > numberOfQubits) {
+                throw new IllegalArgumentException("Register must have between 1 and " + numberOfQubits + " qubits.");
+            }
+            return (byte) registerQubits;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (out.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+    }
+
+    private static final class MatrixKey {
+        private final double[] matrix;
+        private final int hash;
+
+        MatrixKey(double[] matrix) {
+            this.matrix = matrix;
+            this.hash = Arrays.hashCode(matrix);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof MatrixKey && Arrays.equals(matrix, ((MatrixKey) other).matrix);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Per-gate-type statistics for {@link QuantumCircuit#setProfiler(CircuitProfiler)}.
+ *
+ * Gates are grouped by name and counted, timed with System.nanoTime and charged the bytes of
+ * amplitude memory one read and one write of the state would move, an estimate of the
+ * kernel's traffic. Allocation is read from the JVM's per-thread counter, so allocations on
+ * pool threads of a parallel kernel are not included. Counters are LongAdders, so one profiler
+ * can be shared by trajectories running concurrently. Each gate is also committed as a
+ * com.quantumcomputing.Gate JFR event when a flight recording has that event enabled.
+ *
+ * A circuit without a profiler pays one null check per gate.
+ */
+public class CircuitProfiler {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final boolean allocationTracking;
+    private final Map<String, GateStatistics> statistics = new ConcurrentHashMap<>();
+
+    public CircuitProfiler() {
+        this(true);
+    }
+
+    /**
+     * @param allocationTracking whether to read the thread allocation counter around each
+     *                           gate, which costs roughly as much as the two clock reads
+     */
+    public CircuitProfiler(boolean allocationTracking) {
+        this.allocationTracking = allocationTracking && isAllocationCounterEnabled();
+    }
+
+    /**
+     * Applies the gate to the state and records it.
+     */
+    public void apply(QuantumGate gate, StateVector stateVector) {
+        GateEvent event = new GateEvent();
+        event.begin();
+        long allocatedBefore = allocationTracking ? allocatedBytes() : 0L;
+        long start = System.nanoTime();
+        gate.apply(stateVector);
+        long nanos = System.nanoTime() - start;
+        long allocated = allocationTracking ? allocatedBytes() - allocatedBefore : 0L;
+        long bytes = bytesTouched(stateVector);
+
+        statistics.computeIfAbsent(gate.getName(), GateStatistics::new).record(nanos, bytes, allocated);
+        event.end();
+        if (event.shouldCommit()) {
+            event.gate = gate.getName();
+            event.qubits = stateVector.getNumberOfQubits();
+            event.bytesTouched = bytes;
+            event.bytesAllocated = allocated;
+            event.commit();
+        }
+    }
+
+    /**
+     * Statistics per gate name, most expensive first.
+     */
+    public List<GateStatistics> getStatistics() {
+        List<GateStatistics> sorted = new ArrayList<>(statistics.values());
+        sorted.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (GateStatistics entry : statistics.values()) {
+            total += entry.getTotalNanos();
+        }
+        return total;
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * Fixed-width table of the statistics, most expensive gate first.
+     */
+    public String summary() {
+        List<GateStatistics> rows = getStatistics();
+        long total = Math.max(1L, getTotalNanos());
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%-32s %10s %12s %12s %7s %12s %12s%n",
+                "Gate", "Count", "Total ms", "Mean us", "Time %", "Touched MB", "Alloc MB"));
+        for (GateStatistics row : rows) {
+            table.append(String.format(Locale.ROOT, "%-32s %10d %12.3f %12.3f %7.2f %12.1f %12.1f%n",
+                    row.getName(), row.getCount(), row.getTotalNanos() / 1e6, row.getMeanNanos() / 1e3,
+                    100.0 * row.getTotalNanos() / total, row.getBytesTouched() / 1048576.0,
+                    row.getBytesAllocated() / 1048576.0));
+        }
+        return table.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    private static long bytesTouched(StateVector stateVector) {
+        long amplitudes = stateVector instanceof SparseStateVector
+                ? ((SparseStateVector) stateVector).getNonZeroCount()
+                : stateVector.getDimension();
+        return amplitudes * 4 * Double.BYTES;
+    }
+
+    private static boolean isAllocationCounterEnabled() {
+        try {
+            return THREADS instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+    }
+
+    public static class GateStatistics {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder bytesTouched = new LongAdder();
+        private final LongAdder bytesAllocated = new LongAdder();
+
+        GateStatistics(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, long bytes, long allocated) {
+            count.increment();
+            totalNanos.add(nanos);
+            bytesTouched.add(bytes);
+            bytesAllocated.add(allocated);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public double getMeanNanos() {
+            long n = getCount();
+            return n == 0 ? 0.0 : (double) getTotalNanos() / n;
+        }
+
+        public long getBytesTouched() {
+            return bytesTouched.sum();
+        }
+
+        public long getBytesAllocated() {
+            return bytesAllocated.sum();
+        }
+    }
+
+    @Name("com.quantumcomputing.Gate")
+    @Label("Gate")
+    @Category("Quantum Simulation")
+    @Description("One gate applied to a state vector")
+    static final class GateEvent extends Event {
+        @Label("Gate")
+        String gate;
+
+        @Label("Qubits")
+        int qubits;
+
+        @Label("Bytes Touched")
+        @DataAmount
+        long bytesTouched;
+
+        @Label("Bytes Allocated")
+        @DataAmount
+        long bytesAllocated;
+    }
+}
@@ -4,13 +4,30 @@
 
 package com.quantumcomputing;
 
+import java.math.BigInteger;
+
 public class ClassicalPostProcessing {
+    private static final PeriodFinder PERIOD_FINDER = new PeriodFinder();
 
     public static int findPeriod(int measuredValue, int numberOfQubits) {
         double phase = measuredValue / Math.pow(2, numberOfQubits);
         return continuedFraction(phase, numberOfQubits);
     }
 
+    /**
+     * Exact period of base mod N from a whole histogram of measured values; see
+     * {@link PeriodFinder}. Returns null when no outcome leads to the period. Uses a shared
+     * finder whose memo is bounded; long-running callers can pass their own instead.
+     */
+    public static BigInteger findPeriod(SampleHistogram histogram, int numberOfQubits, BigInteger base, BigInteger modulus) {
+        return findPeriod(PERIOD_FINDER, histogram, numberOfQubits, base, modulus);
+    }
+
+    public static BigInteger findPeriod(PeriodFinder finder, SampleHistogram histogram, int numberOfQubits,
+            BigInteger base, BigInteger modulus) {
+        return finder.findPeriod(histogram, numberOfQubits, base, modulus);
+    }
+
     private static int continuedFraction(double phase, int maxIterations) {
         int previousDenominator = 0;
         int currentDenominator = 1;
@@ -0,0 +1,345 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.Arrays;
+
+/**
+ * Exact mixed-state simulation for small noisy circuits.
+ *
+ * Only the upper triangle (i <= j) of the Hermitian matrix is stored, row by row, as
+ * interleaved re/im doubles; entries below the diagonal are read as conjugates. Gates act as
+ * rho -> U rho U^dagger and noise as Pauli channels, both applied to the 2^k x 2^k sub-blocks
+ * selected by the gate's qubits. Block pairs are visited in tiles so the handful of packed
+ * rows a tile touches stay in cache.
+ */
+public class DensityMatrix {
+    public static final int MAX_QUBITS = 13;
+    private static final int TILE = 64;
+
+    private final int numberOfQubits;
+    private final int dimension;
+    private final int[] rowStart;
+    private final double[] entries;
+    private ParallelExecution parallelExecution;
+
+    public DensityMatrix(int numberOfQubits) {
+        if (numberOfQubits <= 0 || numberOfQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException("Density matrices hold between 1 and " + MAX_QUBITS + " qubits.");
+        }
+        this.numberOfQubits = numberOfQubits;
+        this.dimension = 1 << numberOfQubits;
+        this.rowStart = new int[dimension];
+        int start = 0;
+        for (int i = 0; i < dimension; i++) {
+            rowStart[i] = start - i;
+            start += dimension - i;
+        }
+        this.entries = new double[start << 1];
+        this.entries[0] = 1.0;
+    }
+
+    public static DensityMatrix fromStateVector(StateVector stateVector) {
+        DensityMatrix density = new DensityMatrix(stateVector.getNumberOfQubits());
+        int n = density.dimension;
+        for (int i = 0; i < n; i++) {
+            double ar = stateVector.getReal(i);
+            double ai = stateVector.getImaginary(i);
+            for (int j = i; j < n; j++) {
+                double br = stateVector.getReal(j);
+                double bi = -stateVector.getImaginary(j);
+                int p = density.index(i, j);
+                density.entries[p] = ar * br - ai * bi;
+                density.entries[p + 1] = ar * bi + ai * br;
+            }
+        }
+        return density;
+    }
+
+    public int getNumberOfQubits() {
+        return numberOfQubits;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public ParallelExecution getParallelExecution() {
+        return parallelExecution;
+    }
+
+    public void setParallelExecution(ParallelExecution parallelExecution) {
+        this.parallelExecution = parallelExecution;
+    }
+
+    public double getReal(int row, int column) {
+        return row <= column ? entries[index(row, column)] : entries[index(column, row)];
+    }
+
+    public double getImaginary(int row, int column) {
+        return row <= column ? entries[index(row, column) + 1] : -entries[index(column, row) + 1];
+    }
+
+    public double getProbability(int index) {
+        return entries[index(index, index)];
+    }
+
+    public double[] probabilities() {
+        double[] probabilities = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            probabilities[i] = entries[index(i, i)];
+        }
+        return probabilities;
+    }
+
+    public double trace() {
+        double trace = 0.0;
+        for (int i = 0; i < dimension; i++) {
+            trace += entries[index(i, i)];
+        }
+        return trace;
+    }
+
+    /**
+     * rho -> U rho U^dagger for a dense 2^k x 2^k unitary on the given qubits, with qubits[0]
+     * the least significant bit of the matrix's local basis index.
+     */
+    public void applyUnitary(int[] qubits, double[] matrix) {
+        int size = 1 << qubits.length;
+        if (matrix == null || matrix.length != size * size * 2) {
+            throw new IllegalArgumentException("Matrix does not match the number of qubits.");
+        }
+        forEachBlock(qubits, () -> new BlockOperation() {
+            private final double[] tempRe = new double[size * size];
+            private final double[] tempIm = new double[size * size];
+
+            @Override
+            public void apply(double[] re, double[] im) {
+                // temp = U * M
+                for (int r = 0; r < size; r++) {
+                    for (int c = 0; c < size; c++) {
+                        double sumRe = 0.0;
+                        double sumIm = 0.0;
+                        for (int k = 0; k < size; k++) {
+                            int u = (r * size + k) << 1;
+                            int m = k * size + c;
+                            sumRe += matrix[u] * re[m] - matrix[u + 1] * im[m];
+                            sumIm += matrix[u] * im[m] + matrix[u + 1] * re[m];
+                        }
+                        tempRe[r * size + c] = sumRe;
+                        tempIm[r * size + c] = sumIm;
+                    }
+                }
+                // M = temp * U^dagger
+                for (int r = 0; r < size; r++) {
+                    for (int c = 0; c < size; c++) {
+                        double sumRe = 0.0;
+                        double sumIm = 0.0;
+                        for (int k = 0; k < size; k++) {
+                            int t = r * size + k;
+                            int u = (c * size + k) << 1;
+                            sumRe += tempRe[t] * matrix[u] + tempIm[t] * matrix[u + 1];
+                            sumIm += tempIm[t] * matrix[u] - tempRe[t] * matrix[u + 1];
+                        }
+                        re[r * size + c] = sumRe;
+                        im[r * size + c] = sumIm;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * rho -> p0 rho + px X rho X + py Y rho Y + pz Z rho Z on one qubit, p0 = 1 - px - py - pz.
+     */
+    public void applyPauliChannel(int qubit, double px, double py, double pz) {
+        double p0 = 1.0 - px - py - pz;
+        double keepDiagonal = p0 + pz;
+        double flipDiagonal = px + py;
+        double keepOffDiagonal = p0 - pz;
+        double flipOffDiagonal = px - py;
+        forEachBlock(new int[] {qubit}, () -> (re, im) -> {
+            double m00r = re[0], m00i = im[0], m01r = re[1], m01i = im[1];
+            double m10r = re[2], m10i = im[2], m11r = re[3], m11i = im[3];
+            re[0] = keepDiagonal * m00r + flipDiagonal * m11r;
+            im[0] = keepDiagonal * m00i + flipDiagonal * m11i;
+            re[3] = keepDiagonal * m11r + flipDiagonal * m00r;
+            im[3] = keepDiagonal * m11i + flipDiagonal * m00i;
+            re[1] = keepOffDiagonal * m01r + flipOffDiagonal * m10r;
+            im[1] = keepOffDiagonal * m01i + flipOffDiagonal * m10i;
+            re[2] = keepOffDiagonal * m10r + flipOffDiagonal * m01r;
+            im[2] = keepOffDiagonal * m10i + flipOffDiagonal * m01i;
+        });
+    }
+
+    /**
+     * rho -> P rho P^T for a permutation of basis states: entry (i, j) moves to (p(i), p(j)).
+     */
+    public void applyPermutation(PermutationGate gate) {
+        int[] image = new int[dimension];
+        for (int i = 0; i < dimension; i++) {
+            long target = gate.permute(i);
+            if (target < 0 || target >= dimension) {
+                throw new IllegalArgumentException("Gate is not a permutation of " + dimension + " basis states.");
+            }
+            image[i] = (int) target;
+        }
+        double[] source = entries.clone();
+        for (int i = 0; i < dimension; i++) {
+            for (int j = i; j < dimension; j++) {
+                int p = index(i, j);
+                if (image[i] <= image[j]) {
+                    int q = index(image[i], image[j]);
+                    entries[q] = source[p];
+                    entries[q + 1] = source[p + 1];
+                } else {
+                    int q = index(image[j], image[i]);
+                    entries[q] = source[p];
+                    entries[q + 1] = -source[p + 1];
+                }
+            }
+        }
+    }
+
+    /**
+     * rho -> G rho G^dagger for a gate that only defines its action on state vectors: G is
+     * applied to every column of rho, then to every conjugated row of the product.
+     */
+    void applyOperator(QuantumGate gate) {
+        int n = dimension;
+        double[] product = new double[n * n * 2];
+        HeapStateVector column = new HeapStateVector(numberOfQubits);
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < n; i++) {
+                column.set(i, getReal(i, j), getImaginary(i, j));
+            }
+            gate.apply(column);
+            for (int i = 0; i < n; i++) {
+                product[(i * n + j) << 1] = column.getReal(i);
+                product[((i * n + j) << 1) + 1] = column.getImaginary(i);
+            }
+        }
+        HeapStateVector row = new HeapStateVector(numberOfQubits);
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < n; k++) {
+                row.set(k, product[(i * n + k) << 1], -product[((i * n + k) << 1) + 1]);
+            }
+            gate.apply(row);
+            for (int j = i; j < n; j++) {
+                int p = index(i, j);
+                entries[p] = row.getReal(j);
+                entries[p + 1] = -row.getImaginary(j);
+            }
+        }
+    }
+
+    /**
+     * Visits every unordered pair of sub-blocks (a, b), a <= b, where a and b have zeros at
+     * the given qubits. Each stored entry belongs to exactly one such pair, so the operation
+     * sees the full 2^k x 2^k block and writes it back in place.
+     */
+    private void forEachBlock(int[] qubits, BlockOperationFactory factory) {
+        int mask = 0;
+        for (int qubit : qubits) {
+            if (qubit < 0 || qubit >= numberOfQubits) {
+                throw new IllegalArgumentException("Qubit index out of range: " + qubit);
+            }
+            mask |= 1 << qubit;
+        }
+        if (Integer.bitCount(mask) != qubits.length) {
+            throw new IllegalArgumentException("Qubits must be distinct.");
+        }
+        int size = 1 << qubits.length;
+        int[] sorted = qubits.clone();
+        Arrays.sort(sorted);
+        int[] offsets = new int[size];
+        for (int k = 0; k < size; k++) {
+            for (int bit = 0; bit < qubits.length; bit++) {
+                if ((k & (1 << bit)) != 0) {
+                    offsets[k] |= 1 << qubits[bit];
+                }
+            }
+        }
+        int groups = dimension >> qubits.length;
+        int rowTiles = (groups + TILE - 1) / TILE;
+        ParallelExecution.ChunkTask task = (chunk, from, to) -> {
+            BlockOperation operation = factory.create();
+            double[] re = new double[size * size];
+            double[] im = new double[size * size];
+            for (int rowTile = from; rowTile < to; rowTile++) {
+                int rowFrom = rowTile * TILE;
+                int rowTo = Math.min(groups, rowFrom + TILE);
+                for (int columnFrom = rowFrom; columnFrom < groups; columnFrom += TILE) {
+                    int columnTo = Math.min(groups, columnFrom + TILE);
+                    for (int ga = rowFrom; ga < rowTo; ga++) {
+                        int a = base(ga, sorted);
+                        for (int gb = Math.max(ga, columnFrom); gb < columnTo; gb++) {
+                            int b = base(gb, sorted);
+                            gather(a, b, offsets, re, im);
+                            operation.apply(re, im);
+                            scatter(a, b, offsets, re, im);
+                        }
+                    }
+                }
+            }
+        };
+        if (parallelExecution == null) {
+            task.run(0, 0, rowTiles);
+        } else {
+            new ParallelExecution(parallelExecution.getPool(), 1).forEachChunk(rowTiles, task);
+        }
+    }
+
+    private void gather(int a, int b, int[] offsets, double[] re, double[] im) {
+        int size = offsets.length;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int row = a | offsets[r];
+                int column = b | offsets[c];
+                re[r * size + c] = getReal(row, column);
+                im[r * size + c] = getImaginary(row, column);
+            }
+        }
+    }
+
+    private void scatter(int a, int b, int[] offsets, double[] re, double[] im) {
+        int size = offsets.length;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int row = a | offsets[r];
+                int column = b | offsets[c];
+                if (row <= column) {
+                    int p = index(row, column);
+                    entries[p] = re[r * size + c];
+                    entries[p + 1] = im[r * size + c];
+                } else if (a != b) {
+                    int p = index(column, row);
+                    entries[p] = re[r * size + c];
+                    entries[p + 1] = -im[r * size + c];
+                }
+            }
+        }
+    }
+
+    private static int base(int group, int[] sortedQubits) {
+        int base = group;
+        for (int qubit : sortedQubits) {
+            base = StateVector.insertZeroBit(base, qubit);
+        }
+        return base;
+    }
+
+    private int index(int row, int column) {
+        return (rowStart[row] + column) << 1;
+    }
+
+    private interface BlockOperation {
+        void apply(double[] re, double[] im);
+    }
+
+    private interface BlockOperationFactory {
+        BlockOperation create();
+    }
+}
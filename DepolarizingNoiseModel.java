@@ -5,6 +5,7 @@
 package com.quantumcomputing;
 
 import java.util.Random;
+import java.util.SplittableRandom;
 
 public class DepolarizingNoiseModel extends NoiseModel {
     private double probability;
@@ -26,6 +27,36 @@ public class DepolarizingNoiseModel extends NoiseModel {
         }
     }
 
+    /**
+     * Monte-Carlo trajectory form of the channel: each touched qubit independently suffers
+     * X, Y or Z with probability p/3 each. One draw per qubit picks both the event and the Pauli.
+     */
+    @Override
+    public void apply(StateVector stateVector, int[] qubits, SplittableRandom random) {
+        for (int qubit : qubits) {
+            double draw = random.nextDouble();
+            if (draw >= probability) {
+                continue;
+            }
+            int pauli = Math.min(2, (int) (draw * 3 / probability));
+            if (pauli == 0) {
+                stateVector.applySingleQubit(qubit, PauliXGate.MATRIX);
+            } else if (pauli == 1) {
+                stateVector.applySingleQubit(qubit, PauliYGate.MATRIX);
+            } else {
+                stateVector.applySingleQubit(qubit, PauliZGate.MATRIX);
+            }
+        }
+    }
+
+    @Override
+    public void apply(DensityMatrix densityMatrix, int[] qubits) {
+        double pauliProbability = probability / 3;
+        for (int qubit : qubits) {
+            densityMatrix.applyPauliChannel(qubit, pauliProbability, pauliProbability, pauliProbability);
+        }
+    }
+
     public double getProbability() {
         return probability;
     }
@@ -0,0 +1,25 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * State vector in native-order direct buffers. The amplitudes are never scanned or moved by
+ * the garbage collector and are not limited by the maximum Java array length.
+ */
+public class DirectStateVector extends ChunkedStateVector {
+
+    public DirectStateVector(int numberOfQubits) {
+        super(numberOfQubits);
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect((int) chunkBytes())
+                    .order(ByteOrder.nativeOrder())
+                    .asDoubleBuffer();
+        }
+        set(0, 1.0, 0.0);
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * State vector sharded over 2^k {@link ShardWorker} JVMs by its top k physical qubits; worker r
+ * holds the 2^(n-k) amplitudes whose top bits equal r.
+ *
+ * The coordinator keeps a logical-to-physical qubit map. A gate whose qubits are all local
+ * runs shard-local on every worker, with controls on global qubits resolved by each worker's
+ * rank. A gate on a global qubit first swaps it with a local qubit the gate does not use:
+ * every worker trades half its shard with the partner whose rank differs in that bit, in
+ * chunks over a direct socket between the two, and the map records the swap. Qubit swaps,
+ * such as the QFT's final bit reversal, only relabel the map.
+ *
+ * Single amplitudes are read and written with one round trip each, so gates that only
+ * define {@link QuantumGate#apply(double[])} are impractical here; matrix gates, QFTs,
+ * diffusion and phase oracles run at full speed.
+ */
+public class DistributedStateVector extends StateVector implements Closeable {
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    static final byte INIT = 1;
+    static final byte PEERS = 2;
+    static final byte FILL = 3;
+    static final byte GET = 4;
+    static final byte SET = 5;
+    static final byte CONTROLLED = 6;
+    static final byte CONTROLLED_NOT = 7;
+    static final byte MATRIX = 8;
+    static final byte SWAP = 9;
+    static final byte REGISTER_PHASE = 10;
+    static final byte SUM = 11;
+    static final byte NORM = 12;
+    static final byte REFLECT = 13;
+    static final byte CLOSE = 14;
+
+    private final int shardQubits;
+    private final int localQubits;
+    private final int[] physical;
+    private final int[] logical;
+    private final Connection[] workers;
+
+    /**
+     * Connects to the workers, whose count must be a power of two, and prepares |0...0>.
+     */
+    public DistributedStateVector(int numberOfQubits, List<InetSocketAddress> workers) throws IOException {
+        super(numberOfQubits);
+        int count = workers.size();
+        if (count == 0 || Integer.bitCount(count) != 1) {
+            throw new IllegalArgumentException("Number of workers must be a power of two.");
+        }
+        this.shardQubits = Integer.numberOfTrailingZeros(count);
+        this.localQubits = numberOfQubits - shardQubits;
+        if (localQubits < MAX_MATRIX_QUBITS || localQubits > ChunkedStateVector.MAX_QUBITS) {
+            throw new IllegalArgumentException("Each shard must hold between " + MAX_MATRIX_QUBITS + " and "
+                    + ChunkedStateVector.MAX_QUBITS + " qubits.");
+        }
+        this.physical = new int[numberOfQubits];
+        this.logical = new int[numberOfQubits];
+        for (int q = 0; q < numberOfQubits; q++) {
+            physical[q] = q;
+            logical[q] = q;
+        }
+        this.workers = new Connection[count];
+        try {
+            for (int rank = 0; rank < count; rank++) {
+                this.workers[rank] = new Connection(workers.get(rank));
+            }
+            int[] dataPorts = new int[count];
+            for (int rank = 0; rank < count; rank++) {
+                DataOutputStream out = this.workers[rank].out;
+                out.writeByte(INIT);
+                out.writeInt(rank);
+                out.writeInt(shardQubits);
+                out.writeInt(localQubits);
+                out.flush();
+            }
+            int[] next = new int[1];
+            awaitAll(in -> dataPorts[next[0]++] = in.readInt());
+            for (Connection worker : this.workers) {
+                worker.out.writeByte(PEERS);
+                for (int rank = 0; rank < count; rank++) {
+                    worker.out.writeUTF(workers.get(rank).getHostString());
+                    worker.out.writeInt(dataPorts[rank]);
+                }
+                worker.out.flush();
+            }
+            awaitAll(null);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int getShardQubits() {
+        return shardQubits;
+    }
+
+    @Override
+    public double getReal(long index) {
+        return get(index)[0];
+    }
+
+    @Override
+    public double getImaginary(long index) {
+        return get(index)[1];
+    }
+
+    @Override
+    public double getProbability(long index) {
+        double[] amplitude = get(index);
+        return amplitude[0] * amplitude[0] + amplitude[1] * amplitude[1];
+    }
+
+    @Override
+    public void set(long index, double re, double im) {
+        long position = toPhysical(index);
+        Connection worker = workers[(int) (position >>> localQubits)];
+        try {
+            worker.out.writeByte(SET);
+            worker.out.writeLong(position & localMask());
+            worker.out.writeDouble(re);
+            worker.out.writeDouble(im);
+            worker.out.flush();
+            worker.awaitReply();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Worker request failed.", e);
+        }
+    }
+
+    @Override
+    public void fill(double re, double im) {
+        broadcast(out -> {
+            out.writeByte(FILL);
+            out.writeDouble(re);
+            out.writeDouble(im);
+        });
+        awaitAllUnchecked();
+    }
+
+    @Override
+    public double norm() {
+        broadcast(out -> out.writeByte(NORM));
+        double[] sum = new double[1];
+        awaitAllUnchecked(in -> sum[0] += in.readDouble());
+        return Math.sqrt(sum[0]);
+    }
+
+    @Override
+    public void applyControlled(long controlMask, int target, double[] matrix) {
+        checkControls(controlMask, target);
+        checkMatrix(matrix, 2);
+        int local = localize(new int[] {target})[0];
+        long localControls = localControls(controlMask);
+        int globalControls = globalControls(controlMask);
+        broadcast(out -> {
+            out.writeByte(CONTROLLED);
+            out.writeLong(localControls);
+            out.writeInt(globalControls);
+            out.writeInt(local);
+            for (double entry : matrix) {
+                out.writeDouble(entry);
+            }
+        });
+        awaitAllUnchecked();
+    }
+
+    @Override
+    public void applyControlledNot(long controlMask, int target) {
+        checkControls(controlMask, target);
+        int local = localize(new int[] {target})[0];
+        long localControls = localControls(controlMask);
+        int globalControls = globalControls(controlMask);
+        broadcast(out -> {
+            out.writeByte(CONTROLLED_NOT);
+            out.writeLong(localControls);
+            out.writeInt(globalControls);
+            out.writeInt(local);
+        });
+        awaitAllUnchecked();
+    }
+
+    @Override
+    public void applyMatrix(int[] qubits, double[] matrix) {
+        checkQubits(qubits);
+        checkMatrix(matrix, 1 << qubits.length);
+        int[] local = localize(qubits);
+        broadcast(out -> {
+            out.writeByte(MATRIX);
+            out.writeInt(local.length);
+            for (int q : local) {
+                out.writeInt(q);
+            }
+            for (double entry : matrix) {
+                out.writeDouble(entry);
+            }
+        });
+        awaitAllUnchecked();
+    }
+
+    /**
+     * Hadamards plus one diagonal pass per target for all of its controlled phases, as in
+     * {@link ChunkedStateVector}; the bit reversal is a relabeling of the qubit map.
+     */
+    @Override
+    public void applyQft(int registerQubits, boolean inverse) {
+        checkRegister(registerQubits);
+        if (inverse) {
+            reverseRegister(registerQubits);
+            for (int target = 0; target < registerQubits; target++) {
+                applyRegisterPhase(target, -1.0);
+                applySingleQubit(target, HadamardGate.MATRIX);
+            }
+        } else {
+            for (int target = registerQubits - 1; target >= 0; target--) {
+                applySingleQubit(target, HadamardGate.MATRIX);
+                applyRegisterPhase(target, 1.0);
+            }
+            reverseRegister(registerQubits);
+        }
+    }
+
+    /**
+     * Partial sums are added in rank order, so the result is reproducible.
+     */
+    @Override
+    public double[] sum() {
+        broadcast(out -> out.writeByte(SUM));
+        double[] total = new double[2];
+        awaitAllUnchecked(in -> {
+            total[0] += in.readDouble();
+            total[1] += in.readDouble();
+        });
+        return total;
+    }
+
+    @Override
+    public void reflectAbout(double meanRe, double meanIm) {
+        broadcast(out -> {
+            out.writeByte(REFLECT);
+            out.writeDouble(meanRe);
+            out.writeDouble(meanIm);
+        });
+        awaitAllUnchecked();
+    }
+
+    /**
+     * Ends the session; the workers drop their shards and wait for the next coordinator.
+     */
+    @Override
+    public void close() {
+        for (Connection worker : workers) {
+            if (worker == null) {
+                continue;
+            }
+            try {
+                worker.out.writeByte(CLOSE);
+                worker.out.flush();
+            } catch (IOException e) {
+                // The worker is gone already
+            }
+            try {
+                worker.socket.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    private void applyRegisterPhase(int target, double sign) {
+        if (target == 0) {
+            return;
+        }
+        broadcast(out -> {
+            out.writeByte(REGISTER_PHASE);
+            out.writeDouble(sign);
+            out.writeInt(target + 1);
+            for (int q = 0; q <= target; q++) {
+                out.writeInt(physical[q]);
+            }
+        });
+        awaitAllUnchecked();
+    }
+
+    private void reverseRegister(int registerQubits) {
+        for (int i = 0; i < registerQubits / 2; i++) {
+            int j = registerQubits - 1 - i;
+            int p = physical[i];
+            physical[i] = physical[j];
+            physical[j] = p;
+            logical[physical[i]] = i;
+            logical[physical[j]] = j;
+        }
+    }
+
+    /**
+     * Swaps every global qubit among the given logical qubits with a local physical qubit the
+     * gate does not use, highest first, and returns their physical positions.
+     */
+    private int[] localize(int[] qubits) {
+        int[] local = new int[qubits.length];
+        for (int j = 0; j < qubits.length; j++) {
+            if (physical[qubits[j]] < localQubits) {
+                continue;
+            }
+            long used = 0;
+            for (int q : qubits) {
+                if (physical[q] < localQubits) {
+                    used |= 1L << physical[q];
+                }
+            }
+            int victim = localQubits - 1;
+            while ((used & (1L << victim)) != 0) {
+                victim--;
+            }
+            int globalBit = physical[qubits[j]] - localQubits;
+            int slot = victim;
+            broadcast(out -> {
+                out.writeByte(SWAP);
+                out.writeInt(globalBit);
+                out.writeInt(slot);
+            });
+            awaitAllUnchecked();
+            int displaced = logical[victim];
+            int global = physical[qubits[j]];
+            physical[qubits[j]] = victim;
+            logical[victim] = qubits[j];
+            physical[displaced] = global;
+            logical[global] = displaced;
+        }
+        for (int j = 0; j < qubits.length; j++) {
+            local[j] = physical[qubits[j]];
+        }
+        return local;
+    }
+
+    private long localControls(long controlMask) {
+        long mask = 0;
+        for (int q = 0; q < numberOfQubits; q++) {
+            if ((controlMask & (1L << q)) != 0 && physical[q] < localQubits) {
+                mask |= 1L << physical[q];
+            }
+        }
+        return mask;
+    }
+
+    private int globalControls(long controlMask) {
+        int mask = 0;
+        for (int q = 0; q < numberOfQubits; q++) {
+            if ((controlMask & (1L << q)) != 0 && physical[q] >= localQubits) {
+                mask |= 1 << (physical[q] - localQubits);
+            }
+        }
+        return mask;
+    }
+
+    private long toPhysical(long index) {
+        if (index < 0 || index >= dimension) {
+            throw new IllegalArgumentException("Basis state out of range: " + index);
+        }
+        long position = 0;
+        for (int q = 0; q < numberOfQubits; q++) {
+            position |= ((index >>> q) & 1L) << physical[q];
+        }
+        return position;
+    }
+
+    private long localMask() {
+        return (1L << localQubits) - 1;
+    }
+
+    private double[] get(long index) {
+        long position = toPhysical(index);
+        Connection worker = workers[(int) (position >>> localQubits)];
+        try {
+            worker.out.writeByte(GET);
+            worker.out.writeLong(position & localMask());
+            worker.out.flush();
+            DataInputStream in = worker.awaitReply();
+            return new double[] {in.readDouble(), in.readDouble()};
+        } catch (IOException e) {
+            throw new UncheckedIOException("Worker request failed.", e);
+        }
+    }
+
+    /**
+     * Sends a command to every worker before waiting on any, so paired workers can exchange.
+     */
+    private void broadcast(Request request) {
+        try {
+            for (Connection worker : workers) {
+                request.write(worker.out);
+                worker.out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Worker request failed.", e);
+        }
+    }
+
+    /**
+     * Reads one reply from every worker in rank order. A failed worker does not stop the
+     * others' replies from being consumed, so the streams stay in step.
+     */
+    private void awaitAll(Reply reply) throws IOException {
+        IllegalStateException failure = null;
+        for (Connection worker : workers) {
+            try {
+                DataInputStream in = worker.awaitReply();
+                if (reply != null) {
+                    reply.read(in);
+                }
+            } catch (IllegalStateException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void awaitAllUnchecked() {
+        awaitAllUnchecked(null);
+    }
+
+    private void awaitAllUnchecked(Reply reply) {
+        try {
+            awaitAll(reply);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Worker request failed.", e);
+        }
+    }
+
+    private interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Reply {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            this.socket = new Socket(address.getHostString(), address.getPort());
+            this.socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * Reads the status byte of the next reply and leaves its payload on the stream.
+         */
+        DataInputStream awaitReply() throws IOException {
+            if (in.readByte() != OK) {
+                throw new IllegalStateException("Worker " + socket.getRemoteSocketAddress() + " failed: " + in.readUTF());
+            }
+            return in;
+        }
+    }
+}
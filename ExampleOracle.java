@@ -4,6 +4,8 @@
 
 package com.quantumcomputing;
 
+import java.util.BitSet;
+
 public class ExampleOracle extends GroverOracle {
 
     private int markedElementIndex;
@@ -17,4 +19,23 @@ public class ExampleOracle extends GroverOracle {
         // Mark the specified element by flipping its amplitude
         stateVector[markedElementIndex] *= -1;
     }
+
+    @Override
+    public BitSet getMarkedStates() {
+        BitSet marked = new BitSet();
+        marked.set(markedElementIndex);
+        return marked;
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "PhaseOracle(" + markedElementIndex + ")";
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        stateVector.set(markedElementIndex,
+                -stateVector.getReal(markedElementIndex),
+                -stateVector.getImaginary(markedElementIndex));
+    }
 }
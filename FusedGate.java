@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+/**
+ * Dense unitary produced by {@link GateFusion} from a run of adjacent gates.
+ */
+public class FusedGate extends MatrixGate {
+    private final int[] qubits;
+    private final double[] matrix;
+    private final int sourceGateCount;
+
+    public FusedGate(int[] qubits, double[] matrix, int sourceGateCount) {
+        super("Fused" + qubits.length);
+        int size = 1 << qubits.length;
+        if (matrix.length != size * size * 2) {
+            throw new IllegalArgumentException("Matrix does not match the number of qubits.");
+        }
+        this.qubits = qubits.clone();
+        this.matrix = matrix.clone();
+        this.sourceGateCount = sourceGateCount;
+    }
+
+    @Override
+    public int[] getQubits() {
+        return qubits.clone();
+    }
+
+    @Override
+    public double[] getMatrix() {
+        return matrix.clone();
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        stateVector.applyMatrix(qubits, matrix);
+    }
+
+    public int getSourceGateCount() {
+        return sourceGateCount;
+    }
+}
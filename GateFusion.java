@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Compiler pass that shortens a gate list before execution.
+ *
+ * Adjacent self-inverse gates on the same qubits (H.H, X.X, CNOT.CNOT, ...) are removed, then
+ * runs of matrix gates are greedily merged into dense unitaries on at most maxFusedQubits
+ * qubits. Gates that are not {@link MatrixGate}s act as barriers and are kept in place.
+ */
+public class GateFusion {
+    public static final int DEFAULT_MAX_FUSED_QUBITS = 3;
+    private static final double IDENTITY_TOLERANCE = 1e-12;
+
+    private final int maxFusedQubits;
+
+    public GateFusion() {
+        this(DEFAULT_MAX_FUSED_QUBITS);
+    }
+
+    public GateFusion(int maxFusedQubits) {
+        if (maxFusedQubits < 1 || maxFusedQubits > StateVector.MAX_MATRIX_QUBITS) {
+            throw new IllegalArgumentException("Fused gates must act on 1 to " + StateVector.MAX_MATRIX_QUBITS + " qubits.");
+        }
+        this.maxFusedQubits = maxFusedQubits;
+    }
+
+    public int getMaxFusedQubits() {
+        return maxFusedQubits;
+    }
+
+    public List<QuantumGate> optimize(List<QuantumGate> gates, int numberOfQubits) {
+        return fuse(cancelInversePairs(gates, numberOfQubits), numberOfQubits);
+    }
+
+    List<QuantumGate> cancelInversePairs(List<QuantumGate> gates, int numberOfQubits) {
+        List<QuantumGate> output = new ArrayList<>(gates.size());
+        List<Deque<Integer>> lastOnQubit = new ArrayList<>(numberOfQubits);
+        for (int q = 0; q < numberOfQubits; q++) {
+            lastOnQubit.add(new ArrayDeque<>());
+        }
+
+        for (QuantumGate gate : gates) {
+            int[] qubits = QuantumGate.touchedQubits(gate, numberOfQubits);
+            if (gate instanceof MatrixGate && ((MatrixGate) gate).isSelfInverse()) {
+                Integer previous = lastOnQubit.get(qubits[0]).peek();
+                if (previous != null && isSameGate(output.get(previous), (MatrixGate) gate)
+                        && isLastOnAll(lastOnQubit, qubits, previous)) {
+                    output.set(previous, null);
+                    for (int q : qubits) {
+                        lastOnQubit.get(q).pop();
+                    }
+                    continue;
+                }
+            }
+            int index = output.size();
+            output.add(gate);
+            for (int q : qubits) {
+                lastOnQubit.get(q).push(index);
+            }
+        }
+
+        List<QuantumGate> result = new ArrayList<>(output.size());
+        for (QuantumGate gate : output) {
+            if (gate != null) {
+                result.add(gate);
+            }
+        }
+        return result;
+    }
+
+    List<QuantumGate> fuse(List<QuantumGate> gates, int numberOfQubits) {
+        List<Block> blocks = new ArrayList<>();
+        Block[] lastOnQubit = new Block[numberOfQubits];
+
+        for (QuantumGate gate : gates) {
+            if (!(gate instanceof MatrixGate)) {
+                Block barrier = new Block(gate);
+                blocks.add(barrier);
+                Arrays.fill(lastOnQubit, barrier);
+                continue;
+            }
+            MatrixGate matrixGate = (MatrixGate) gate;
+            int[] qubits = matrixGate.getQubits();
+            Block candidate = null;
+            boolean unique = true;
+            for (int q : qubits) {
+                Block block = lastOnQubit[q];
+                if (block == null) {
+                    continue;
+                }
+                if (candidate == null) {
+                    candidate = block;
+                } else if (candidate != block) {
+                    unique = false;
+                }
+            }
+            if (candidate == null && !blocks.isEmpty()) {
+                // Nothing has touched these qubits yet, so the gate commutes back to the latest block
+                candidate = blocks.get(blocks.size() - 1);
+            }
+
+            Block target;
+            if (candidate != null && unique && candidate.canAbsorb(qubits, maxFusedQubits)) {
+                candidate.absorb(matrixGate, qubits);
+                target = candidate;
+            } else {
+                target = new Block(matrixGate, qubits);
+                blocks.add(target);
+            }
+            for (int q : qubits) {
+                lastOnQubit[q] = target;
+            }
+        }
+
+        List<QuantumGate> result = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            QuantumGate gate = block.toGate();
+            if (gate != null) {
+                result.add(gate);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSameGate(QuantumGate previous, MatrixGate gate) {
+        return previous.getClass() == gate.getClass()
+                && Arrays.equals(((MatrixGate) previous).getQubits(), gate.getQubits());
+    }
+
+    private static boolean isLastOnAll(List<Deque<Integer>> lastOnQubit, int[] qubits, Integer index) {
+        for (int q : qubits) {
+            if (!index.equals(lastOnQubit.get(q).peek())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Embeds a matrix acting on fromQubits into the larger space spanned by toQubits.
+     */
+    static double[] expand(double[] matrix, int[] fromQubits, int[] toQubits) {
+        int size = 1 << toQubits.length;
+        int[] positions = new int[fromQubits.length];
+        int fromMask = 0;
+        for (int j = 0; j < fromQubits.length; j++) {
+            for (int k = 0; k < toQubits.length; k++) {
+                if (toQubits[k] == fromQubits[j]) {
+                    positions[j] = k;
+                }
+            }
+            fromMask |= 1 << positions[j];
+        }
+        int smallSize = 1 << fromQubits.length;
+        double[] result = new double[size * size * 2];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if ((row & ~fromMask) != (col & ~fromMask)) {
+                    continue;
+                }
+                int m = (extract(row, positions) * smallSize + extract(col, positions)) << 1;
+                int r = (row * size + col) << 1;
+                result[r] = matrix[m];
+                result[r + 1] = matrix[m + 1];
+            }
+        }
+        return result;
+    }
+
+    private static int extract(int index, int[] positions) {
+        int value = 0;
+        for (int j = 0; j < positions.length; j++) {
+            value |= ((index >> positions[j]) & 1) << j;
+        }
+        return value;
+    }
+
+    static double[] multiply(double[] left, double[] right, int size) {
+        double[] result = new double[size * size * 2];
+        for (int row = 0; row < size; row++) {
+            for (int k = 0; k < size; k++) {
+                int l = (row * size + k) << 1;
+                double lr = left[l];
+                double li = left[l + 1];
+                if (lr == 0.0 && li == 0.0) {
+                    continue;
+                }
+                for (int col = 0; col < size; col++) {
+                    int r = (k * size + col) << 1;
+                    int o = (row * size + col) << 1;
+                    result[o] += lr * right[r] - li * right[r + 1];
+                    result[o + 1] += lr * right[r + 1] + li * right[r];
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isIdentity(double[] matrix, int size) {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int m = (row * size + col) << 1;
+                double expected = row == col ? 1.0 : 0.0;
+                if (Math.abs(matrix[m] - expected) > IDENTITY_TOLERANCE || Math.abs(matrix[m + 1]) > IDENTITY_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class Block {
+        private final QuantumGate barrier;
+        private MatrixGate single;
+        private int[] qubits;
+        private double[] matrix;
+        private int gateCount;
+
+        Block(QuantumGate barrier) {
+            this.barrier = barrier;
+        }
+
+        Block(MatrixGate gate, int[] qubits) {
+            this.barrier = null;
+            this.single = gate;
+            this.qubits = qubits;
+            this.matrix = gate.getMatrix();
+            this.gateCount = 1;
+        }
+
+        boolean canAbsorb(int[] gateQubits, int maxFusedQubits) {
+            return barrier == null && union(qubits, gateQubits).length <= maxFusedQubits;
+        }
+
+        void absorb(MatrixGate gate, int[] gateQubits) {
+            int[] combined = union(qubits, gateQubits);
+            double[] current = expand(matrix, qubits, combined);
+            double[] next = expand(gate.getMatrix(), gateQubits, combined);
+            matrix = multiply(next, current, 1 << combined.length);
+            qubits = combined;
+            single = null;
+            gateCount++;
+        }
+
+        QuantumGate toGate() {
+            if (barrier != null) {
+                return barrier;
+            }
+            if (single != null) {
+                return single;
+            }
+            if (isIdentity(matrix, 1 << qubits.length)) {
+                return null;
+            }
+            return new FusedGate(qubits, matrix, gateCount);
+        }
+
+        private static int[] union(int[] qubits, int[] gateQubits) {
+            int[] combined = Arrays.copyOf(qubits, qubits.length + gateQubits.length);
+            int length = qubits.length;
+            for (int q : gateQubits) {
+                boolean present = false;
+                for (int i = 0; i < length; i++) {
+                    if (combined[i] == q) {
+                        present = true;
+                        break;
+                    }
+                }
+                if (!present) {
+                    combined[length++] = q;
+                }
+            }
+            return Arrays.copyOf(combined, length);
+        }
+    }
+}
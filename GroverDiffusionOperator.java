@@ -25,4 +25,17 @@ public class GroverDiffusionOperator extends QuantumGate {
             stateVector[i] = 2 * average - stateVector[i];
         }
     }
+
+    @Override
+    public String getCanonicalForm() {
+        return "Diffusion";
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        // Inversion about the mean: one pass for the complex average, one to reflect
+        double[] sum = stateVector.sum();
+        long length = stateVector.getDimension();
+        stateVector.reflectAbout(sum[0] / length, sum[1] / length);
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.BitSet;
+
+/**
+ * Grover search specialised for a phase oracle given as a set of marked basis states.
+ *
+ * One iteration is two streaming passes instead of an oracle gate followed by the diffusion
+ * operator: the first pass accumulates the mean with the marked amplitudes' signs already
+ * flipped, the second writes 2 * mean - (+-a) back. The marked set is read one 64-bit word
+ * per 64 amplitudes alongside the state, so the oracle costs no separate sweep.
+ */
+public class GroverEngine {
+    private final int numberOfQubits;
+    private final long[] marked;
+    private final long markedCount;
+    private ParallelExecution parallelExecution;
+
+    public GroverEngine(int numberOfQubits, BitSet markedStates) {
+        if (numberOfQubits <= 0 || numberOfQubits > HeapStateVector.MAX_QUBITS) {
+            throw new IllegalArgumentException("Grover engine holds between 1 and " + HeapStateVector.MAX_QUBITS + " qubits.");
+        }
+        if (markedStates == null || markedStates.isEmpty() || markedStates.length() > (1 << numberOfQubits)) {
+            throw new IllegalArgumentException("Marked states must be a non-empty subset of the basis states.");
+        }
+        this.numberOfQubits = numberOfQubits;
+        this.marked = markedStates.toLongArray();
+        this.markedCount = markedStates.cardinality();
+    }
+
+    public GroverEngine(int numberOfQubits, GroverOracle oracle) {
+        this(numberOfQubits, oracle.getMarkedStates());
+    }
+
+    public int getNumberOfQubits() {
+        return numberOfQubits;
+    }
+
+    public long getMarkedCount() {
+        return markedCount;
+    }
+
+    public void setParallelExecution(ParallelExecution parallelExecution) {
+        this.parallelExecution = parallelExecution;
+    }
+
+    /**
+     * The iteration count that maximises the success probability, round(pi / (4 theta) - 1/2)
+     * with sin(theta) = sqrt(M / N).
+     */
+    public static int optimalIterations(long dimension, long markedCount) {
+        if (markedCount <= 0 || markedCount > dimension) {
+            throw new IllegalArgumentException("Marked count must be between 1 and the dimension.");
+        }
+        double theta = Math.asin(Math.sqrt((double) markedCount / dimension));
+        return (int) Math.max(0, Math.round(Math.PI / (4 * theta) - 0.5));
+    }
+
+    public int getOptimalIterations() {
+        return optimalIterations(1L << numberOfQubits, markedCount);
+    }
+
+    public StateVector run() {
+        return run(getOptimalIterations());
+    }
+
+    /**
+     * Prepares the uniform superposition and applies the given number of iterations.
+     */
+    public StateVector run(int iterations) {
+        HeapStateVector state = new HeapStateVector(numberOfQubits);
+        state.fill(1.0 / Math.sqrt(1L << numberOfQubits), 0.0);
+        for (int i = 0; i < iterations; i++) {
+            iterate(state);
+        }
+        return state;
+    }
+
+    /**
+     * One oracle-plus-diffusion step. Partial sums are combined in chunk order, so the result
+     * does not depend on thread scheduling.
+     */
+    public void iterate(HeapStateVector state) {
+        if (state.getNumberOfQubits() != numberOfQubits) {
+            throw new IllegalArgumentException("Invalid state vector.");
+        }
+        double[] a = state.getAmplitudes();
+        int size = 1 << numberOfQubits;
+        double[] mean;
+        if (parallelExecution == null) {
+            mean = flippedSum(a, 0, size);
+        } else {
+            double[] partials = new double[parallelExecution.chunkCount(size) << 1];
+            parallelExecution.forEachChunk(size, (chunk, from, to) -> {
+                double[] partial = flippedSum(a, from, to);
+                partials[chunk << 1] = partial[0];
+                partials[(chunk << 1) + 1] = partial[1];
+            });
+            mean = new double[2];
+            for (int p = 0; p < partials.length; p += 2) {
+                mean[0] += partials[p];
+                mean[1] += partials[p + 1];
+            }
+        }
+        double twiceRe = 2 * (mean[0] / size);
+        double twiceIm = 2 * (mean[1] / size);
+        if (parallelExecution == null) {
+            reflect(a, twiceRe, twiceIm, 0, size);
+        } else {
+            parallelExecution.forEachChunk(size, (chunk, from, to) -> reflect(a, twiceRe, twiceIm, from, to));
+        }
+    }
+
+    private double[] flippedSum(double[] a, int from, int to) {
+        double re = 0.0;
+        double im = 0.0;
+        int i = from;
+        while (i < to) {
+            int wordEnd = Math.min(to, (i | 63) + 1);
+            int word = i >>> 6;
+            if (word >= marked.length || marked[word] == 0) {
+                for (int p = i << 1; p < wordEnd << 1; p += 2) {
+                    re += a[p];
+                    im += a[p + 1];
+                }
+            } else {
+                for (int j = i; j < wordEnd; j++) {
+                    int p = j << 1;
+                    if (isMarked(j)) {
+                        re -= a[p];
+                        im -= a[p + 1];
+                    } else {
+                        re += a[p];
+                        im += a[p + 1];
+                    }
+                }
+            }
+            i = wordEnd;
+        }
+        return new double[] {re, im};
+    }
+
+    private void reflect(double[] a, double twiceRe, double twiceIm, int from, int to) {
+        int i = from;
+        while (i < to) {
+            // Whole words without marks are the common case and run as a plain loop
+            int wordEnd = Math.min(to, (i | 63) + 1);
+            int word = i >>> 6;
+            if (word >= marked.length || marked[word] == 0) {
+                for (int p = i << 1; p < wordEnd << 1; p += 2) {
+                    a[p] = twiceRe - a[p];
+                    a[p + 1] = twiceIm - a[p + 1];
+                }
+            } else {
+                for (int j = i; j < wordEnd; j++) {
+                    int p = j << 1;
+                    if (isMarked(j)) {
+                        a[p] = twiceRe + a[p];
+                        a[p + 1] = twiceIm + a[p + 1];
+                    } else {
+                        a[p] = twiceRe - a[p];
+                        a[p + 1] = twiceIm - a[p + 1];
+                    }
+                }
+            }
+            i = wordEnd;
+        }
+    }
+
+    private boolean isMarked(int index) {
+        int word = index >>> 6;
+        return word < marked.length && (marked[word] & (1L << index)) != 0;
+    }
+}
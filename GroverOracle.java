@@ -4,6 +4,8 @@
 
 package com.quantumcomputing;
 
+import java.util.BitSet;
+
 public abstract class GroverOracle extends QuantumGate {
 
     public GroverOracle() {
@@ -12,4 +14,28 @@ public abstract class GroverOracle extends QuantumGate {
 
     @Override
     public abstract void apply(double[] stateVector);
+
+    /**
+     * The basis states whose phase the oracle flips, or null when the oracle is not a plain
+     * phase flip. {@link GroverEngine} needs this to run the oracle inside its sweeps.
+     */
+    public BitSet getMarkedStates() {
+        return null;
+    }
+
+    /**
+     * Oracles that list their marked states flip those amplitudes directly, touching nothing
+     * else.
+     */
+    @Override
+    public void apply(StateVector stateVector) {
+        BitSet marked = getMarkedStates();
+        if (marked == null) {
+            super.apply(stateVector);
+            return;
+        }
+        for (int i = marked.nextSetBit(0); i >= 0 && i < stateVector.getDimension(); i = marked.nextSetBit(i + 1)) {
+            stateVector.set(i, -stateVector.getReal(i), -stateVector.getImaginary(i));
+        }
+    }
 }
@@ -16,12 +16,13 @@ public class GroverSearch {
         this.oracle = oracle;
         this.diffusionOperator = new GroverDiffusionOperator();
         this.circuit = new QuantumCircuit(numberOfQubits);
+        this.circuit.setGateFusion(new GateFusion());
     }
 
     public void initialize() {
         // Apply Hadamard gate to all qubits
         for (int i = 0; i < numberOfQubits; i++) {
-            circuit.addGate(new HadamardGate());
+            circuit.addGate(new HadamardGate(i));
         }
     }
 
@@ -34,6 +35,18 @@ public class GroverSearch {
         circuit.execute(stateVector);
     }
 
+    public void execute(StateVector stateVector) {
+        circuit.execute(stateVector);
+    }
+
+    /**
+     * Runs the search from |0...0>, reusing cached prefixes when the circuit has a
+     * {@link StateCache}.
+     */
+    public StateVector run() {
+        return circuit.run();
+    }
+
     public QuantumCircuit getCircuit() {
         return circuit;
     }
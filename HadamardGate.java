@@ -4,18 +4,43 @@
 
 package com.quantumcomputing;
 
-public class HadamardGate extends QuantumGate {
+public class HadamardGate extends MatrixGate {
+    private static final double H = 1.0 / Math.sqrt(2);
+    static final double[] MATRIX = {H, 0, H, 0, H, 0, -H, 0};
 
-    public HadamardGate() {
+    private int targetQubit;
+
+    public HadamardGate(int targetQubit) {
         super("Hadamard");
+        this.targetQubit = targetQubit;
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        stateVector.applySingleQubit(targetQubit, MATRIX);
     }
 
     @Override
-    public void apply(double[] stateVector) {
-        // Implementation of Hadamard gate application
-        int length = stateVector.length;
-        for (int i = 0; i < length; i++) {
-            stateVector[i] = stateVector[i] / Math.sqrt(2);
-        }
+    public int[] getQubits() {
+        return new int[] {targetQubit};
+    }
+
+    @Override
+    public double[] getMatrix() {
+        return MATRIX.clone();
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return true;
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "H(" + targetQubit + ")";
+    }
+
+    public int getTargetQubit() {
+        return targetQubit;
     }
 }
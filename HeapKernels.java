@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+/**
+ * Optional SIMD kernels over on-heap amplitude arrays: interleaved (re, im) for
+ * {@link HeapStateVector}, and the lane-major re/im blocks of {@link BatchExecutor}.
+ *
+ * The only implementation, VectorKernels, lives in the separate vector/ source directory
+ * because it needs the incubating Vector API; the main sources compile without it. To enable
+ * it, compile vector/ into the same package with --add-modules jdk.incubator.vector and run
+ * with --add-modules jdk.incubator.vector. {@link #load()} finds it by reflection and returns
+ * null when the class or the module is missing, or when
+ * -Dcom.quantumcomputing.vectorKernels=false turns it off; callers then run their scalar loops.
+ */
+interface HeapKernels {
+
+    /**
+     * Whether applyControlled can take a gate on this target and control mask.
+     */
+    boolean supports(int target, int controlMask);
+
+    /**
+     * Same contract as the scalar pair-update kernel: pairs [from, to), where pair k is the
+     * amplitude i = k with a zero inserted at bit target and its partner i + 2^target.
+     */
+    void applyControlled(double[] a, int controlMask, int target, double[] matrix, int from, int to);
+
+    /**
+     * Sum of amplitudes [from, to) as {re, im}.
+     */
+    double[] sum(double[] a, int from, int to);
+
+    /**
+     * a -> 2 * mean - a over amplitudes [from, to).
+     */
+    void reflect(double[] a, double twiceRe, double twiceIm, int from, int to);
+
+    /**
+     * One single-qubit gate pair across lanes: amplitudes p + l and q + l of separate re and im
+     * arrays for l in [0, width), rounded exactly like the scalar loop.
+     */
+    void rotateLanes(double[] re, double[] im, int p, int q, int width, double[] matrix);
+
+    /**
+     * (re, im)[target + l] += (mr, mi) * (inRe, inIm)[input + l] for l in [0, width).
+     */
+    void accumulateLanes(double[] re, double[] im, int target, double[] inRe, double[] inIm, int input,
+            int width, double mr, double mi);
+
+    /**
+     * sum[l] += a[p + l] for l in [0, width).
+     */
+    void addLanes(double[] sum, double[] a, int p, int width);
+
+    /**
+     * a[p + l] = twice[l] - a[p + l] for l in [0, width).
+     */
+    void reflectLanes(double[] twice, double[] a, int p, int width);
+
+    static HeapKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("com.quantumcomputing.vectorKernels", "true"))
+                || !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        try {
+            return (HeapKernels) Class.forName("com.quantumcomputing.VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
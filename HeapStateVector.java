@@ -0,0 +1,404 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.Arrays;
+
+/**
+ * State vector held in a single on-heap double[], limited to 29 qubits by the maximum
+ * array length.
+ */
+public class HeapStateVector extends StateVector {
+    public static final int MAX_QUBITS = 29;
+
+    /**
+     * SIMD kernels when vector/ was compiled in and the JVM runs with --add-modules
+     * jdk.incubator.vector, else null; see {@link HeapKernels}.
+     */
+    static final HeapKernels VECTOR_KERNELS = HeapKernels.load();
+
+    private final int size;
+    private final double[] amplitudes;
+
+    public HeapStateVector(int numberOfQubits) {
+        super(numberOfQubits);
+        if (numberOfQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException("Heap state vectors hold at most " + MAX_QUBITS + " qubits.");
+        }
+        this.size = 1 << numberOfQubits;
+        this.amplitudes = new double[size << 1];
+        this.amplitudes[0] = 1.0;
+    }
+
+    double[] getAmplitudes() {
+        return amplitudes;
+    }
+
+    @Override
+    public double getReal(long index) {
+        return amplitudes[(int) index << 1];
+    }
+
+    @Override
+    public double getImaginary(long index) {
+        return amplitudes[((int) index << 1) + 1];
+    }
+
+    @Override
+    public void set(long index, double re, double im) {
+        amplitudes[(int) index << 1] = re;
+        amplitudes[((int) index << 1) + 1] = im;
+    }
+
+    @Override
+    public void fill(double re, double im) {
+        for (int p = 0; p < amplitudes.length; p += 2) {
+            amplitudes[p] = re;
+            amplitudes[p + 1] = im;
+        }
+    }
+
+    @Override
+    public double norm() {
+        double sum = 0.0;
+        for (double value : amplitudes) {
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    @Override
+    public double[] copyReal() {
+        double[] real = new double[size];
+        for (int i = 0; i < size; i++) {
+            real[i] = amplitudes[i << 1];
+        }
+        return real;
+    }
+
+    @Override
+    public double[] copyImaginary() {
+        double[] imaginary = new double[size];
+        for (int i = 0; i < size; i++) {
+            imaginary[i] = amplitudes[(i << 1) + 1];
+        }
+        return imaginary;
+    }
+
+    @Override
+    public void setReal(double[] real) {
+        checkLength(real);
+        for (int i = 0; i < size; i++) {
+            amplitudes[i << 1] = real[i];
+        }
+    }
+
+    @Override
+    public void setImaginary(double[] imaginary) {
+        checkLength(imaginary);
+        for (int i = 0; i < size; i++) {
+            amplitudes[(i << 1) + 1] = imaginary[i];
+        }
+    }
+
+    @Override
+    public void applyControlledNot(long controlMask, int target) {
+        checkControls(controlMask, target);
+        int mask = (int) controlMask;
+        forEachRange(size >> 1, (chunk, from, to) -> applyControlledNot(mask, target, from, to));
+    }
+
+    private void applyControlledNot(int controlMask, int target, int from, int to) {
+        double[] a = amplitudes;
+        int stride = 1 << target;
+
+        int k = from;
+        while (k < to) {
+            int runEnd = Math.min(to, (k | (stride - 1)) + 1);
+            int i = insertZeroBit(k, target);
+            for (; k < runEnd; k++, i++) {
+                if ((i & controlMask) != controlMask) {
+                    continue;
+                }
+                int p = i << 1;
+                int q = (i + stride) << 1;
+                double re = a[p];
+                double im = a[p + 1];
+                a[p] = a[q];
+                a[p + 1] = a[q + 1];
+                a[q] = re;
+                a[q + 1] = im;
+            }
+        }
+    }
+
+    @Override
+    void applyPermutation(PermutationTable table) {
+        if (table.getSize() > size) {
+            throw new IllegalArgumentException("Permutation does not fit the register.");
+        }
+        forEachRange(table.getCycleCount(), (chunk, from, to) -> table.apply(amplitudes, 2, from, to));
+    }
+
+    @Override
+    public void applyControlled(long controlMask, int target, double[] matrix) {
+        checkControls(controlMask, target);
+        checkMatrix(matrix, 2);
+        int mask = (int) controlMask;
+        forEachRange(size >> 1, (chunk, from, to) -> applyControlled(mask, target, matrix, from, to));
+    }
+
+    /**
+     * Pair-update kernel over the pair indices [from, to). Pair k updates amplitudes
+     * i = k with a zero inserted at bit target, and i + 2^target. A contiguous pair range
+     * covers whole stride blocks for low-order targets and two contiguous slices of one
+     * block for high-order targets, so every chunk streams sequential memory.
+     */
+    private void applyControlled(int controlMask, int target, double[] matrix, int from, int to) {
+        if (VECTOR_KERNELS != null && VECTOR_KERNELS.supports(target, controlMask)) {
+            VECTOR_KERNELS.applyControlled(amplitudes, controlMask, target, matrix, from, to);
+            return;
+        }
+        double u00r = matrix[0], u00i = matrix[1], u01r = matrix[2], u01i = matrix[3];
+        double u10r = matrix[4], u10i = matrix[5], u11r = matrix[6], u11i = matrix[7];
+        double[] a = amplitudes;
+        int stride = 1 << target;
+
+        int k = from;
+        while (k < to) {
+            int runEnd = Math.min(to, (k | (stride - 1)) + 1);
+            int i = insertZeroBit(k, target);
+            for (; k < runEnd; k++, i++) {
+                if ((i & controlMask) != controlMask) {
+                    continue;
+                }
+                int p = i << 1;
+                int q = (i + stride) << 1;
+                double ar = a[p], ai = a[p + 1];
+                double br = a[q], bi = a[q + 1];
+                a[p] = u00r * ar - u00i * ai + u01r * br - u01i * bi;
+                a[p + 1] = u00r * ai + u00i * ar + u01r * bi + u01i * br;
+                a[q] = u10r * ar - u10i * ai + u11r * br - u11i * bi;
+                a[q + 1] = u10r * ai + u10i * ar + u11r * bi + u11i * br;
+            }
+        }
+    }
+
+    @Override
+    public void applyTwoQubit(int qubit0, int qubit1, double[] matrix) {
+        checkQubits(new int[] {qubit0, qubit1});
+        checkMatrix(matrix, 4);
+        forEachRange(size >> 2, (chunk, from, to) -> applyTwoQubit(qubit0, qubit1, matrix, from, to));
+    }
+
+    private void applyTwoQubit(int qubit0, int qubit1, double[] matrix, int from, int to) {
+        int low = Math.min(qubit0, qubit1);
+        int high = Math.max(qubit0, qubit1);
+        int bit0 = 1 << qubit0;
+        int bit1 = 1 << qubit1;
+        int[] offsets = {0, bit0, bit1, bit0 | bit1};
+        double[] re = new double[4];
+        double[] im = new double[4];
+        double[] a = amplitudes;
+
+        for (int group = from; group < to; group++) {
+            int base = insertZeroBit(insertZeroBit(group, low), high);
+            for (int k = 0; k < 4; k++) {
+                int p = (base | offsets[k]) << 1;
+                re[k] = a[p];
+                im[k] = a[p + 1];
+            }
+            for (int row = 0; row < 4; row++) {
+                double sumRe = 0.0;
+                double sumIm = 0.0;
+                for (int col = 0; col < 4; col++) {
+                    int m = (row * 4 + col) << 1;
+                    sumRe += matrix[m] * re[col] - matrix[m + 1] * im[col];
+                    sumIm += matrix[m] * im[col] + matrix[m + 1] * re[col];
+                }
+                int p = (base | offsets[row]) << 1;
+                a[p] = sumRe;
+                a[p + 1] = sumIm;
+            }
+        }
+    }
+
+    @Override
+    public void applyMatrix(int[] qubits, double[] matrix) {
+        if (qubits.length == 1) {
+            applySingleQubit(qubits[0], matrix);
+            return;
+        }
+        if (qubits.length == 2) {
+            applyTwoQubit(qubits[0], qubits[1], matrix);
+            return;
+        }
+        checkQubits(qubits);
+        checkMatrix(matrix, 1 << qubits.length);
+        int[] sorted = qubits.clone();
+        Arrays.sort(sorted);
+        int[] offsets = new int[1 << qubits.length];
+        for (int k = 0; k < offsets.length; k++) {
+            for (int bit = 0; bit < qubits.length; bit++) {
+                if ((k & (1 << bit)) != 0) {
+                    offsets[k] |= 1 << qubits[bit];
+                }
+            }
+        }
+        forEachRange(size >> qubits.length, (chunk, from, to) -> applyMatrix(sorted, offsets, matrix, from, to));
+    }
+
+    private void applyMatrix(int[] sortedQubits, int[] offsets, double[] matrix, int from, int to) {
+        int size = offsets.length;
+        double[] re = new double[size];
+        double[] im = new double[size];
+        double[] a = amplitudes;
+
+        for (int group = from; group < to; group++) {
+            int base = group;
+            for (int qubit : sortedQubits) {
+                base = insertZeroBit(base, qubit);
+            }
+            for (int k = 0; k < size; k++) {
+                int p = (base | offsets[k]) << 1;
+                re[k] = a[p];
+                im[k] = a[p + 1];
+            }
+            for (int row = 0; row < size; row++) {
+                double sumRe = 0.0;
+                double sumIm = 0.0;
+                int m = (row * size) << 1;
+                for (int col = 0; col < size; col++, m += 2) {
+                    sumRe += matrix[m] * re[col] - matrix[m + 1] * im[col];
+                    sumIm += matrix[m] * im[col] + matrix[m + 1] * re[col];
+                }
+                int p = (base | offsets[row]) << 1;
+                a[p] = sumRe;
+                a[p + 1] = sumIm;
+            }
+        }
+    }
+
+    /**
+     * Computes the transform in place as a radix-2 butterfly on every contiguous block of
+     * 2^m amplitudes: a bit-reversal permutation followed by m butterfly stages.
+     */
+    @Override
+    public void applyQft(int registerQubits, boolean inverse) {
+        checkRegister(registerQubits);
+        QFTTables tables = QFTTables.forQubits(registerQubits);
+        int blockSize = tables.size;
+        double sign = inverse ? -1.0 : 1.0;
+        double scale = 1.0 / Math.sqrt(blockSize);
+
+        for (int block = 0; block < size; block += blockSize) {
+            int offset = block;
+            forEachRange(blockSize, (chunk, from, to) -> bitReverse(tables, offset, from, to));
+            for (int length = 2; length <= blockSize; length <<= 1) {
+                int span = length;
+                forEachRange(blockSize >> 1, (chunk, from, to) -> butterflies(tables, offset, span, sign, from, to));
+            }
+        }
+        forEachRange(size, (chunk, from, to) -> {
+            for (int p = from << 1; p < to << 1; p++) {
+                amplitudes[p] *= scale;
+            }
+        });
+    }
+
+    private void bitReverse(QFTTables tables, int offset, int from, int to) {
+        double[] a = amplitudes;
+        for (int i = from; i < to; i++) {
+            int j = tables.bitReversal[i];
+            if (i < j) {
+                int p = (offset + i) << 1;
+                int q = (offset + j) << 1;
+                double re = a[p];
+                double im = a[p + 1];
+                a[p] = a[q];
+                a[p + 1] = a[q + 1];
+                a[q] = re;
+                a[q + 1] = im;
+            }
+        }
+    }
+
+    private void butterflies(QFTTables tables, int offset, int length, double sign, int from, int to) {
+        double[] a = amplitudes;
+        int half = length >> 1;
+        int step = tables.size / length;
+        for (int b = from; b < to; b++) {
+            int k = b & (half - 1);
+            int i = offset + ((b - k) << 1) + k;
+            double wr = tables.cos[k * step];
+            double wi = sign * tables.sin[k * step];
+            int p = i << 1;
+            int q = (i + half) << 1;
+            double vr = a[q] * wr - a[q + 1] * wi;
+            double vi = a[q] * wi + a[q + 1] * wr;
+            double ur = a[p];
+            double ui = a[p + 1];
+            a[p] = ur + vr;
+            a[p + 1] = ui + vi;
+            a[q] = ur - vr;
+            a[q + 1] = ui - vi;
+        }
+    }
+
+    @Override
+    public double[] sum() {
+        if (parallelExecution == null) {
+            return sum(0, size);
+        }
+        double[] partials = new double[parallelExecution.chunkCount(size) << 1];
+        parallelExecution.forEachChunk(size, (chunk, from, to) -> {
+            double[] partial = sum(from, to);
+            partials[chunk << 1] = partial[0];
+            partials[(chunk << 1) + 1] = partial[1];
+        });
+        double re = 0.0;
+        double im = 0.0;
+        for (int p = 0; p < partials.length; p += 2) {
+            re += partials[p];
+            im += partials[p + 1];
+        }
+        return new double[] {re, im};
+    }
+
+    private double[] sum(int from, int to) {
+        if (VECTOR_KERNELS != null) {
+            return VECTOR_KERNELS.sum(amplitudes, from, to);
+        }
+        double re = 0.0;
+        double im = 0.0;
+        for (int p = from << 1; p < to << 1; p += 2) {
+            re += amplitudes[p];
+            im += amplitudes[p + 1];
+        }
+        return new double[] {re, im};
+    }
+
+    @Override
+    public void reflectAbout(double meanRe, double meanIm) {
+        double twiceRe = 2 * meanRe;
+        double twiceIm = 2 * meanIm;
+        forEachRange(size, (chunk, from, to) -> {
+            if (VECTOR_KERNELS != null) {
+                VECTOR_KERNELS.reflect(amplitudes, twiceRe, twiceIm, from, to);
+                return;
+            }
+            for (int p = from << 1; p < to << 1; p += 2) {
+                amplitudes[p] = twiceRe - amplitudes[p];
+                amplitudes[p + 1] = twiceIm - amplitudes[p + 1];
+            }
+        });
+    }
+
+    private void checkLength(double[] values) {
+        if (values == null || values.length != size) {
+            throw new IllegalArgumentException("Invalid state vector.");
+        }
+    }
+}
@@ -10,10 +10,8 @@ public class Main {
         int markedElementIndex = 5; // Example index for the marked element
         double[] stateVector = new double[1 << numberOfQubits];
 
-        // Initialize state vector
-        for (int i = 0; i < stateVector.length; i++) {
-            stateVector[i] = 1.0 / Math.sqrt(stateVector.length);
-        }
+        // Initialize state vector to |0...0>; GroverSearch.initialize() adds the Hadamard layer
+        stateVector[0] = 1.0;
 
         GroverOracle oracle = new ExampleOracle(markedElementIndex);
         GroverSearch groverSearch = new GroverSearch(numberOfQubits, oracle);
@@ -49,10 +47,8 @@ public class Main {
         int markedElementIndex = 5; // Example index for the marked element
         double[] stateVector = new double[1 << numberOfQubits];
 
-        // Initialize state vector
-        for (int i = 0; i < stateVector.length; i++) {
-            stateVector[i] = 1.0 / Math.sqrt(stateVector.length);
-        }
+        // Initialize state vector to |0...0>; GroverSearch.initialize() adds the Hadamard layer
+        stateVector[0] = 1.0;
 
         GroverOracle oracle = new ExampleOracle(markedElementIndex);
         GroverSearch groverSearch = new GroverSearch(numberOfQubits, oracle);
@@ -75,9 +71,9 @@ public class Main {
 
         // Demonstrate additional gates
         QuantumCircuit circuit = new QuantumCircuit(numberOfQubits);
-        circuit.addGate(new PauliXGate());
-        circuit.addGate(new PauliYGate());
-        circuit.addGate(new PauliZGate());
+        circuit.addGate(new PauliXGate(0));
+        circuit.addGate(new PauliYGate(1));
+        circuit.addGate(new PauliZGate(2));
         circuit.addGate(new ToffoliGate(0, 1, 2));
 
         // Reinitialize state vector
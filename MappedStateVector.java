@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * State vector backed by a memory-mapped file, so registers larger than physical memory are
+ * paged by the operating system instead of the Java heap.
+ */
+public class MappedStateVector extends ChunkedStateVector implements Closeable {
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] mappings;
+
+    /**
+     * Creates (or truncates) the file and initializes it to |0...0>.
+     */
+    public MappedStateVector(Path file, int numberOfQubits) throws IOException {
+        super(numberOfQubits);
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.mappings = new MappedByteBuffer[chunks.length];
+        try {
+            long bytes = chunkBytes();
+            for (int i = 0; i < chunks.length; i++) {
+                mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * bytes, bytes);
+                chunks[i] = mappings[i].order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        set(0, 1.0, 0.0);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes dirty pages back to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+    }
+
+    /**
+     * Closes the file channel. The mapping stays valid until the vector is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.Arrays;
+
+/**
+ * A gate described by a dense unitary on a fixed list of qubits. The first listed qubit is
+ * the least significant bit of the matrix's local basis index; matrices are row-major with
+ * interleaved complex entries.
+ */
+public abstract class MatrixGate extends QuantumGate {
+
+    public MatrixGate(String name) {
+        super(name);
+    }
+
+    public abstract int[] getQubits();
+
+    public abstract double[] getMatrix();
+
+    public boolean isSelfInverse() {
+        return false;
+    }
+
+    @Override
+    public void apply(double[] stateVector) {
+        applyToReal(stateVector);
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        stateVector.applyMatrix(getQubits(), getMatrix());
+    }
+
+    @Override
+    public void apply(DensityMatrix densityMatrix) {
+        densityMatrix.applyUnitary(getQubits(), getMatrix());
+    }
+
+    /**
+     * Qubits plus the exact bits of the matrix. Fixed gates such as H and CNOT override this
+     * with a shorter form naming the gate and its qubits.
+     */
+    @Override
+    public String getCanonicalForm() {
+        StringBuilder form = new StringBuilder("U").append(Arrays.toString(getQubits()));
+        for (double entry : getMatrix()) {
+            form.append(' ').append(Long.toHexString(Double.doubleToLongBits(entry)));
+        }
+        return form.toString();
+    }
+
+    /**
+     * Builds the matrix of a gate controlled on its first numberOfControls qubits, with the
+     * 2x2 matrix acting on the last qubit.
+     */
+    static double[] controlled(int numberOfControls, double[] matrix) {
+        int size = 2 << numberOfControls;
+        double[] result = new double[size * size * 2];
+        int controls = (1 << numberOfControls) - 1;
+        for (int i = 0; i < size; i++) {
+            if ((i & controls) != controls) {
+                result[(i * size + i) << 1] = 1;
+            }
+        }
+        int[] rows = {controls, controls | (1 << numberOfControls)};
+        for (int row = 0; row < 2; row++) {
+            for (int col = 0; col < 2; col++) {
+                int m = (rows[row] * size + rows[col]) << 1;
+                result[m] = matrix[(row * 2 + col) << 1];
+                result[m + 1] = matrix[((row * 2 + col) << 1) + 1];
+            }
+        }
+        return result;
+    }
+}
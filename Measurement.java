@@ -24,4 +24,28 @@ public class Measurement {
         }
         return stateVector.length - 1; // Should not reach here if stateVector is normalized
     }
+
+    public long measure(StateVector stateVector) {
+        double cumulativeProbability = 0.0;
+        double randomValue = random.nextDouble();
+        long length = stateVector.getDimension();
+        for (long i = 0; i < length; i++) {
+            cumulativeProbability += stateVector.getProbability(i);
+            if (randomValue < cumulativeProbability) {
+                return i;
+            }
+        }
+        return length - 1; // Should not reach here if stateVector is normalized
+    }
+
+    /**
+     * Draws a batch of shots with one table build instead of a linear scan per shot.
+     */
+    public SampleHistogram sample(StateVector stateVector, int shots) {
+        return sample(stateVector, shots, random.nextLong(), null);
+    }
+
+    public SampleHistogram sample(StateVector stateVector, int shots, long seed, ParallelExecution parallelExecution) {
+        return new ShotSampler(stateVector).sample(shots, seed, parallelExecution);
+    }
 }
@@ -4,6 +4,8 @@
 
 package com.quantumcomputing;
 
+import java.util.SplittableRandom;
+
 public abstract class NoiseModel {
     protected String name;
 
@@ -16,4 +18,29 @@ public abstract class NoiseModel {
     }
 
     public abstract void apply(double[] stateVector);
+
+    public void apply(StateVector stateVector) {
+        // Same convention as QuantumGate: real-valued models act on each part independently
+        double[] part = stateVector.copyReal();
+        apply(part);
+        stateVector.setReal(part);
+        part = stateVector.copyImaginary();
+        apply(part);
+        stateVector.setImaginary(part);
+    }
+
+    /**
+     * Applies one trajectory's noise after a gate on the given qubits. Models that can be
+     * written as per-qubit error events override this to draw from the trajectory's generator.
+     */
+    public void apply(StateVector stateVector, int[] qubits, SplittableRandom random) {
+        apply(stateVector);
+    }
+
+    /**
+     * Applies the exact channel to a density matrix after a gate on the given qubits.
+     */
+    public void apply(DensityMatrix densityMatrix, int[] qubits) {
+        throw new UnsupportedOperationException(getName() + " has no density-matrix form.");
+    }
 }
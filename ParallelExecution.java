@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits gate kernels over a ForkJoinPool. Work is cut into fixed chunks of grainSize
+ * items, so chunk boundaries (and any per-chunk partial results) do not depend on the
+ * number of worker threads.
+ *
+ * Closing shuts down the pool only when this instance created it; a pool passed in stays
+ * with its owner.
+ */
+public class ParallelExecution implements AutoCloseable {
+    public static final int DEFAULT_GRAIN_SIZE = 1 << 14;
+
+    private final ForkJoinPool pool;
+    private final int grainSize;
+    private final boolean ownsPool;
+
+    public ParallelExecution(ForkJoinPool pool, int grainSize) {
+        this(pool, grainSize, false);
+    }
+
+    public ParallelExecution(int parallelism) {
+        this(new ForkJoinPool(parallelism), DEFAULT_GRAIN_SIZE, true);
+    }
+
+    private ParallelExecution(ForkJoinPool pool, int grainSize, boolean ownsPool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null.");
+        }
+        if (grainSize <= 0) {
+            throw new IllegalArgumentException("Grain size must be positive.");
+        }
+        this.pool = pool;
+        this.grainSize = grainSize;
+        this.ownsPool = ownsPool;
+    }
+
+    public static ParallelExecution commonPool() {
+        return new ParallelExecution(ForkJoinPool.commonPool(), DEFAULT_GRAIN_SIZE);
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public int getGrainSize() {
+        return grainSize;
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    public int chunkCount(int count) {
+        return (int) (((long) count + grainSize - 1) / grainSize);
+    }
+
+    public void forEachChunk(int count, ChunkTask task) {
+        int chunks = chunkCount(count);
+        if (chunks <= 1 || pool.getParallelism() == 1) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                runChunk(task, chunk, count);
+            }
+            return;
+        }
+        pool.invoke(new ChunkAction(task, count, 0, chunks));
+    }
+
+    private void runChunk(ChunkTask task, int chunk, int count) {
+        int from = chunk * grainSize;
+        task.run(chunk, from, Math.min(count, from + grainSize));
+    }
+
+    public interface ChunkTask {
+        void run(int chunk, int from, int to);
+    }
+
+    @SuppressWarnings("serial")
+    private class ChunkAction extends RecursiveAction {
+        private final ChunkTask task;
+        private final int count;
+        private final int firstChunk;
+        private final int lastChunk;
+
+        ChunkAction(ChunkTask task, int count, int firstChunk, int lastChunk) {
+            this.task = task;
+            this.count = count;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastChunk - firstChunk == 1) {
+                runChunk(task, firstChunk, count);
+                return;
+            }
+            int middle = (firstChunk + lastChunk) >>> 1;
+            invokeAll(new ChunkAction(task, count, firstChunk, middle),
+                    new ChunkAction(task, count, middle, lastChunk));
+        }
+    }
+}
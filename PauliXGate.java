@@ -4,20 +4,47 @@
 
 package com.quantumcomputing;
 
-public class PauliXGate extends QuantumGate {
+public class PauliXGate extends MatrixGate implements PermutationGate {
+    static final double[] MATRIX = {0, 0, 1, 0, 1, 0, 0, 0};
 
-    public PauliXGate() {
+    private int targetQubit;
+
+    public PauliXGate(int targetQubit) {
         super("Pauli-X");
+        this.targetQubit = targetQubit;
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        stateVector.applyControlledNot(0L, targetQubit);
+    }
+
+    @Override
+    public long permute(long index) {
+        return index ^ (1L << targetQubit);
+    }
+
+    @Override
+    public int[] getQubits() {
+        return new int[] {targetQubit};
     }
 
     @Override
-    public void apply(double[] stateVector) {
-        // Implementation of Pauli-X (NOT) gate application
-        int length = stateVector.length;
-        for (int i = 0; i < length; i++) {
-            if (Integer.bitCount(i) % 2 == 1) {
-                stateVector[i] = 1 - stateVector[i];
-            }
-        }
+    public double[] getMatrix() {
+        return MATRIX.clone();
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return true;
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "X(" + targetQubit + ")";
+    }
+
+    public int getTargetQubit() {
+        return targetQubit;
     }
 }
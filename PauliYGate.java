@@ -4,20 +4,42 @@
 
 package com.quantumcomputing;
 
-public class PauliYGate extends QuantumGate {
+public class PauliYGate extends MatrixGate {
+    static final double[] MATRIX = {0, 0, 0, -1, 0, 1, 0, 0};
 
-    public PauliYGate() {
+    private int targetQubit;
+
+    public PauliYGate(int targetQubit) {
         super("Pauli-Y");
+        this.targetQubit = targetQubit;
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        stateVector.applySingleQubit(targetQubit, MATRIX);
     }
 
     @Override
-    public void apply(double[] stateVector) {
-        // Implementation of Pauli-Y gate application
-        int length = stateVector.length;
-        for (int i = 0; i < length; i++) {
-            if (Integer.bitCount(i) % 2 == 1) {
-                stateVector[i] = -1 * stateVector[i];
-            }
-        }
+    public int[] getQubits() {
+        return new int[] {targetQubit};
+    }
+
+    @Override
+    public double[] getMatrix() {
+        return MATRIX.clone();
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return true;
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "Y(" + targetQubit + ")";
+    }
+
+    public int getTargetQubit() {
+        return targetQubit;
     }
 }
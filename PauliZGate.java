@@ -4,20 +4,42 @@
 
 package com.quantumcomputing;
 
-public class PauliZGate extends QuantumGate {
+public class PauliZGate extends MatrixGate {
+    static final double[] MATRIX = {1, 0, 0, 0, 0, 0, -1, 0};
 
-    public PauliZGate() {
+    private int targetQubit;
+
+    public PauliZGate(int targetQubit) {
         super("Pauli-Z");
+        this.targetQubit = targetQubit;
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        stateVector.applySingleQubit(targetQubit, MATRIX);
     }
 
     @Override
-    public void apply(double[] stateVector) {
-        // Implementation of Pauli-Z gate application
-        int length = stateVector.length;
-        for (int i = 0; i < length; i++) {
-            if (Integer.bitCount(i) % 2 == 1) {
-                stateVector[i] = -1 * stateVector[i];
-            }
-        }
+    public int[] getQubits() {
+        return new int[] {targetQubit};
+    }
+
+    @Override
+    public double[] getMatrix() {
+        return MATRIX.clone();
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return true;
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "Z(" + targetQubit + ")";
+    }
+
+    public int getTargetQubit() {
+        return targetQubit;
     }
 }
@@ -0,0 +1,278 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact period finding for the classical half of Shor's algorithm.
+ *
+ * A value y measured on an m-qubit register approximates s/r * 2^m. The convergents of
+ * y / 2^m are expanded with BigInteger arithmetic, so registers of any width stay exact, and
+ * every convergent denominator below N, with its first few multiples for when gcd(s, r) > 1,
+ * is checked with base^q mod N. Distinct outcomes of a histogram are expanded in parallel.
+ * When no single outcome yields the period, the least common multiple of the most frequent
+ * outcomes' denominators is tried. Verified periods and rejected candidates are memoized per
+ * (N, base), so later batches for the same instance skip the exponentiations. The memo keeps
+ * the most recently used instances only, rejected candidates are capped per instance and
+ * dropped once the period is known.
+ */
+public class PeriodFinder {
+    public static final int DEFAULT_MAX_MULTIPLE = 4;
+    public static final int DEFAULT_MEMO_ENTRIES = 1024;
+    static final int LCM_OUTCOMES = 8;
+    static final int MAX_REJECTED = 4096;
+
+    private final int maxMultiple;
+    private final ParallelExecution parallelExecution;
+    private final Map<Instance, Memo> memo;
+
+    public PeriodFinder() {
+        this(DEFAULT_MAX_MULTIPLE, null);
+    }
+
+    public PeriodFinder(int maxMultiple, ParallelExecution parallelExecution) {
+        this(maxMultiple, parallelExecution, DEFAULT_MEMO_ENTRIES);
+    }
+
+    /**
+     * @param maxMultiple       multiples k * q of each denominator that are tried
+     * @param parallelExecution pool that expands outcomes concurrently, or null
+     * @param memoEntries       (N, base) instances remembered, least recently used evicted first
+     */
+    public PeriodFinder(int maxMultiple, ParallelExecution parallelExecution, int memoEntries) {
+        if (maxMultiple < 1) {
+            throw new IllegalArgumentException("Maximum multiple must be positive.");
+        }
+        if (memoEntries < 1) {
+            throw new IllegalArgumentException("Memo must hold at least one entry.");
+        }
+        this.maxMultiple = maxMultiple;
+        this.parallelExecution = parallelExecution;
+        this.memo = Collections.synchronizedMap(new LinkedHashMap<Instance, Memo>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Instance, Memo> eldest) {
+                return size() > memoEntries;
+            }
+        });
+    }
+
+    /**
+     * Denominators of the convergents of numerator / denominator that are positive and below
+     * limit, in increasing order.
+     */
+    public static List<BigInteger> convergentDenominators(BigInteger numerator, BigInteger denominator, BigInteger limit) {
+        if (denominator.signum() <= 0 || numerator.signum() < 0) {
+            throw new IllegalArgumentException("Fraction must be non-negative with a positive denominator.");
+        }
+        List<BigInteger> denominators = new ArrayList<>();
+        BigInteger previous = BigInteger.ONE;
+        BigInteger current = BigInteger.ZERO;
+        BigInteger p = numerator;
+        BigInteger q = denominator;
+        while (q.signum() != 0) {
+            BigInteger[] division = p.divideAndRemainder(q);
+            BigInteger next = division[0].multiply(current).add(previous);
+            if (next.compareTo(limit) >= 0) {
+                break;
+            }
+            if (next.signum() > 0 && (denominators.isEmpty() || !next.equals(denominators.get(denominators.size() - 1)))) {
+                denominators.add(next);
+            }
+            previous = current;
+            current = next;
+            p = q;
+            q = division[1];
+        }
+        return denominators;
+    }
+
+    public static boolean isPeriod(BigInteger base, BigInteger modulus, BigInteger candidate) {
+        return candidate.signum() > 0 && base.modPow(candidate, modulus).equals(BigInteger.ONE);
+    }
+
+    /**
+     * The order of base modulo N found from the measured outcomes of a registerQubits-qubit
+     * register, or null when no outcome leads to it.
+     */
+    public BigInteger findPeriod(SampleHistogram histogram, int registerQubits, BigInteger base, BigInteger modulus) {
+        if (modulus.compareTo(BigInteger.TWO) < 0) {
+            throw new IllegalArgumentException("Modulus must be greater than 1.");
+        }
+        if (base.signum() <= 0 || base.compareTo(modulus) >= 0 || !base.gcd(modulus).equals(BigInteger.ONE)) {
+            throw new IllegalArgumentException("Base must lie in (0, N) and be coprime to N.");
+        }
+        if (registerQubits <= 0) {
+            throw new IllegalArgumentException("Register must have at least one qubit.");
+        }
+        Memo entry = memo.computeIfAbsent(new Instance(base, modulus), key -> new Memo());
+        if (entry.period != null) {
+            return entry.period;
+        }
+        if (base.equals(BigInteger.ONE)) {
+            entry.period = BigInteger.ONE;
+            return entry.period;
+        }
+
+        BigInteger registerSize = BigInteger.ONE.shiftLeft(registerQubits);
+        int size = histogram.size();
+        BigInteger[] lastDenominators = new BigInteger[size];
+        ParallelExecution outcomes = parallelExecution == null ? null : new ParallelExecution(parallelExecution.getPool(), 1);
+        int chunks = outcomes == null ? 1 : outcomes.chunkCount(size);
+        BigInteger[] best = new BigInteger[chunks];
+        ParallelExecution.ChunkTask task = (chunk, from, to) -> {
+            for (int i = from; i < to; i++) {
+                BigInteger measured = BigInteger.valueOf(histogram.getOutcome(i));
+                for (BigInteger q : convergentDenominators(measured, registerSize, modulus)) {
+                    lastDenominators[i] = q;
+                    for (int k = 1; k <= maxMultiple; k++) {
+                        BigInteger candidate = q.multiply(BigInteger.valueOf(k));
+                        if (candidate.compareTo(modulus) >= 0 || (best[chunk] != null && candidate.compareTo(best[chunk]) >= 0)) {
+                            break;
+                        }
+                        if (check(entry, base, modulus, candidate)) {
+                            best[chunk] = candidate;
+                            break;
+                        }
+                    }
+                }
+            }
+        };
+        if (outcomes == null) {
+            task.run(0, 0, size);
+        } else {
+            outcomes.forEachChunk(size, task);
+        }
+
+        BigInteger period = null;
+        for (BigInteger candidate : best) {
+            if (candidate != null && (period == null || candidate.compareTo(period) < 0)) {
+                period = candidate;
+            }
+        }
+        if (period == null) {
+            period = fromCommonMultiple(entry, histogram, lastDenominators, base, modulus);
+        }
+        if (period != null) {
+            period = reduce(base, modulus, period);
+            entry.period = period;
+            entry.rejected.clear();
+        }
+        return period;
+    }
+
+    public BigInteger findPeriod(SampleHistogram histogram, int registerQubits, long base, long modulus) {
+        return findPeriod(histogram, registerQubits, BigInteger.valueOf(base), BigInteger.valueOf(modulus));
+    }
+
+    /**
+     * The memoized period for (N, base), or null when none has been found yet.
+     */
+    public BigInteger getCachedPeriod(BigInteger base, BigInteger modulus) {
+        Memo entry = memo.get(new Instance(base, modulus));
+        return entry == null ? null : entry.period;
+    }
+
+    public void clear() {
+        memo.clear();
+    }
+
+    /**
+     * lcm of the largest denominators of the most frequent outcomes, growing one outcome at a
+     * time while it stays below N.
+     */
+    private BigInteger fromCommonMultiple(Memo entry, SampleHistogram histogram, BigInteger[] lastDenominators,
+            BigInteger base, BigInteger modulus) {
+        Integer[] order = new Integer[histogram.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(histogram.getCount(b), histogram.getCount(a)));
+        BigInteger lcm = BigInteger.ONE;
+        int used = 0;
+        for (int i = 0; i < order.length && used < LCM_OUTCOMES; i++) {
+            BigInteger q = lastDenominators[order[i]];
+            if (q == null) {
+                continue;
+            }
+            used++;
+            BigInteger next = lcm.divide(lcm.gcd(q)).multiply(q);
+            if (next.compareTo(modulus) >= 0) {
+                break;
+            }
+            lcm = next;
+            if (check(entry, base, modulus, lcm)) {
+                return lcm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A verified candidate may be a multiple of the order; strip small prime factors that
+     * keep base^r = 1.
+     */
+    private BigInteger reduce(BigInteger base, BigInteger modulus, BigInteger period) {
+        for (int prime = 2; prime <= Math.max(2, maxMultiple); prime++) {
+            if (!BigInteger.valueOf(prime).isProbablePrime(20)) {
+                continue;
+            }
+            BigInteger p = BigInteger.valueOf(prime);
+            while (period.mod(p).signum() == 0 && isPeriod(base, modulus, period.divide(p))) {
+                period = period.divide(p);
+            }
+        }
+        return period;
+    }
+
+    private static boolean check(Memo entry, BigInteger base, BigInteger modulus, BigInteger candidate) {
+        if (entry.rejected.contains(candidate)) {
+            return false;
+        }
+        if (isPeriod(base, modulus, candidate)) {
+            return true;
+        }
+        if (entry.rejected.size() < MAX_REJECTED) {
+            entry.rejected.add(candidate);
+        }
+        return false;
+    }
+
+    private static final class Memo {
+        private volatile BigInteger period;
+        private final Set<BigInteger> rejected = ConcurrentHashMap.newKeySet();
+    }
+
+    private static final class Instance {
+        private final BigInteger base;
+        private final BigInteger modulus;
+
+        Instance(BigInteger base, BigInteger modulus) {
+            this.base = base;
+            this.modulus = modulus;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Instance && base.equals(((Instance) other).base)
+                    && modulus.equals(((Instance) other).modulus);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * base.hashCode() + modulus.hashCode();
+        }
+    }
+}
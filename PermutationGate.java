@@ -0,0 +1,24 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+/**
+ * Gate that maps basis states onto basis states, |i> -> |permute(i)>. Such gates are applied
+ * by moving amplitudes rather than multiplying by a 0/1 matrix.
+ */
+public interface PermutationGate {
+    /**
+     * Image of basis state |index>. Must be a bijection on the register's basis states.
+     */
+    long permute(long index);
+
+    /**
+     * Whether permute is a bijection on an n-qubit register. Gates that are only
+     * conditionally unitary override this.
+     */
+    default boolean isPermutationOf(int numberOfQubits) {
+        return true;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Cycle decomposition of a {@link PermutationGate} on the basis states [0, size). Fixed
+ * points are dropped; each remaining cycle x, p(x), p(p(x)), ... is stored contiguously, so
+ * applying the permutation rotates every cycle in place with a single temporary amplitude.
+ */
+final class PermutationTable {
+    private final int size;
+    private final int[] elements;
+    private final int[] cycleStarts;
+
+    private PermutationTable(int size, int[] elements, int[] cycleStarts) {
+        this.size = size;
+        this.elements = elements;
+        this.cycleStarts = cycleStarts;
+    }
+
+    static PermutationTable build(PermutationGate gate, int size) {
+        BitSet visited = new BitSet(size);
+        int[] elements = new int[size];
+        int[] cycleStarts = new int[16];
+        int count = 0;
+        int cycles = 0;
+        for (int start = 0; start < size; start++) {
+            if (visited.get(start)) {
+                continue;
+            }
+            if (gate.permute(start) == start) {
+                visited.set(start);
+                continue;
+            }
+            if (cycles == cycleStarts.length - 1) {
+                cycleStarts = Arrays.copyOf(cycleStarts, cycleStarts.length * 2);
+            }
+            cycleStarts[cycles++] = count;
+            long x = start;
+            do {
+                if (x < 0 || x >= size || visited.get((int) x)) {
+                    throw new IllegalArgumentException("Gate is not a permutation of " + size + " basis states.");
+                }
+                visited.set((int) x);
+                elements[count++] = (int) x;
+                x = gate.permute(x);
+            } while (x != start);
+        }
+        cycleStarts[cycles] = count;
+        return new PermutationTable(size, Arrays.copyOf(elements, count), Arrays.copyOf(cycleStarts, cycles + 1));
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getCycleCount() {
+        return cycleStarts.length - 1;
+    }
+
+    /**
+     * Permutes cycles [fromCycle, toCycle) of an array holding width doubles per basis state.
+     */
+    void apply(double[] values, int width, int fromCycle, int toCycle) {
+        for (int c = fromCycle; c < toCycle; c++) {
+            int first = cycleStarts[c];
+            int last = cycleStarts[c + 1] - 1;
+            for (int w = 0; w < width; w++) {
+                double carry = values[elements[last] * width + w];
+                for (int k = last; k > first; k--) {
+                    values[elements[k] * width + w] = values[elements[k - 1] * width + w];
+                }
+                values[elements[first] * width + w] = carry;
+            }
+        }
+    }
+
+    /**
+     * Permutes slots of width doubles at value[index * stride + offset], all cycles at once.
+     * carry must hold at least width doubles.
+     */
+    void apply(double[] values, int stride, int offset, int width, double[] carry) {
+        for (int c = 0; c < getCycleCount(); c++) {
+            int first = cycleStarts[c];
+            int last = cycleStarts[c + 1] - 1;
+            System.arraycopy(values, elements[last] * stride + offset, carry, 0, width);
+            for (int k = last; k > first; k--) {
+                System.arraycopy(values, elements[k - 1] * stride + offset, values, elements[k] * stride + offset, width);
+            }
+            System.arraycopy(carry, 0, values, elements[first] * stride + offset, width);
+        }
+    }
+
+    void apply(StateVector stateVector, int fromCycle, int toCycle) {
+        for (int c = fromCycle; c < toCycle; c++) {
+            int first = cycleStarts[c];
+            int last = cycleStarts[c + 1] - 1;
+            double carryRe = stateVector.getReal(elements[last]);
+            double carryIm = stateVector.getImaginary(elements[last]);
+            for (int k = last; k > first; k--) {
+                int from = elements[k - 1];
+                stateVector.set(elements[k], stateVector.getReal(from), stateVector.getImaginary(from));
+            }
+            stateVector.set(elements[first], carryRe, carryIm);
+        }
+    }
+}
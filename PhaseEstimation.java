@@ -7,18 +7,26 @@ package com.quantumcomputing;
 public class PhaseEstimation extends QuantumGate {
     private int numberOfQubits;
     private QuantumGate unitaryOperator;
+    private QFTGate qftGate;
+    private QFTGate inverseQftGate;
 
     public PhaseEstimation(int numberOfQubits, QuantumGate unitaryOperator) {
         super("Phase Estimation");
         this.numberOfQubits = numberOfQubits;
         this.unitaryOperator = unitaryOperator;
+        this.qftGate = new QFTGate(numberOfQubits);
+        this.inverseQftGate = new QFTGate(numberOfQubits, true);
     }
 
     @Override
     public void apply(double[] stateVector) {
+        applyToReal(stateVector);
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
         // Apply the inverse Quantum Fourier Transform
-        QFTGate qftGate = new QFTGate(numberOfQubits);
-        qftGate.apply(stateVector);
+        inverseQftGate.apply(stateVector);
 
         // Apply the controlled unitary operator
         for (int i = 0; i < numberOfQubits; i++) {
@@ -29,6 +37,12 @@ public class PhaseEstimation extends QuantumGate {
         qftGate.apply(stateVector);
     }
 
+    @Override
+    public String getCanonicalForm() {
+        String unitary = unitaryOperator.getCanonicalForm();
+        return unitary == null ? null : "PhaseEstimation(" + numberOfQubits + ", " + unitary + ")";
+    }
+
     public int getNumberOfQubits() {
         return numberOfQubits;
     }
@@ -6,29 +6,39 @@ package com.quantumcomputing;
 
 public class QFTGate extends QuantumGate {
     private int numberOfQubits;
+    private boolean inverse;
 
     public QFTGate(int numberOfQubits) {
-        super("QFT");
+        this(numberOfQubits, false);
+    }
+
+    public QFTGate(int numberOfQubits, boolean inverse) {
+        super(inverse ? "Inverse QFT" : "QFT");
         this.numberOfQubits = numberOfQubits;
+        this.inverse = inverse;
     }
 
     @Override
     public void apply(double[] stateVector) {
-        int length = stateVector.length;
-        double[] newStateVector = new double[length];
-
-        for (int k = 0; k < length; k++) {
-            newStateVector[k] = 0;
-            for (int j = 0; j < length; j++) {
-                newStateVector[k] += stateVector[j] * Math.exp(2 * Math.PI * 1j * k * j / length);
-            }
-            newStateVector[k] /= Math.sqrt(length);
-        }
-
-        System.arraycopy(newStateVector, 0, stateVector, 0, length);
+        applyToReal(stateVector);
+    }
+
+    @Override
+    public void apply(StateVector stateVector) {
+        // In-place radix-2 butterfly over qubits 0..numberOfQubits-1, O(n * 2^n)
+        stateVector.applyQft(numberOfQubits, inverse);
     }
 
     public int getNumberOfQubits() {
         return numberOfQubits;
     }
+
+    @Override
+    public String getCanonicalForm() {
+        return (inverse ? "InverseQFT" : "QFT") + "(" + numberOfQubits + ")";
+    }
+
+    public boolean isInverse() {
+        return inverse;
+    }
 }
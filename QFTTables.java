@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Twiddle factors and bit-reversal permutation for a 2^m-point transform, computed once per
+ * register size and shared by every QFT of that size.
+ */
+final class QFTTables {
+    private static final ConcurrentMap<Integer, QFTTables> CACHE = new ConcurrentHashMap<>();
+
+    final int size;
+    final double[] cos;
+    final double[] sin;
+    final int[] bitReversal;
+
+    private QFTTables(int numberOfQubits) {
+        this.size = 1 << numberOfQubits;
+        int half = size >> 1;
+        this.cos = new double[Math.max(half, 1)];
+        this.sin = new double[Math.max(half, 1)];
+        for (int k = 0; k < half; k++) {
+            double angle = 2 * Math.PI * k / size;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+        this.bitReversal = new int[size];
+        for (int i = 1; i < size; i++) {
+            bitReversal[i] = (bitReversal[i >> 1] >> 1) | ((i & 1) << (numberOfQubits - 1));
+        }
+    }
+
+    static QFTTables forQubits(int numberOfQubits) {
+        return CACHE.computeIfAbsent(numberOfQubits, QFTTables::new);
+    }
+}
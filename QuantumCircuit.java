@@ -5,25 +5,327 @@
 package com.quantumcomputing;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.SplittableRandom;
 
 public class QuantumCircuit {
+    public static final double DEFAULT_SPARSE_THRESHOLD = 1.0 / 64;
+
     private List<QuantumGate> gates;
+    private List<NoiseModel> noiseModels;
     private int numberOfQubits;
+    private Measurement measurement;
+    private ParallelExecution parallelExecution;
+    private GateFusion gateFusion;
+    private List<QuantumGate> compiledGates;
+    private SplittableRandom noiseRandom;
+    private StateCache stateCache;
+    private double sparseThreshold = DEFAULT_SPARSE_THRESHOLD;
+    private CircuitProfiler profiler;
 
     public QuantumCircuit(int numberOfQubits) {
         this.numberOfQubits = numberOfQubits;
         this.gates = new ArrayList<>();
+        this.noiseModels = new ArrayList<>();
+        this.measurement = new Measurement();
     }
 
     public void addGate(QuantumGate gate) {
         gates.add(gate);
+        compiledGates = null;
+    }
+
+    public void addNoiseModel(NoiseModel noiseModel) {
+        noiseModels.add(noiseModel);
+    }
+
+    public List<NoiseModel> getNoiseModels() {
+        return Collections.unmodifiableList(noiseModels);
+    }
+
+    public List<QuantumGate> getGates() {
+        return Collections.unmodifiableList(gates);
+    }
+
+    /**
+     * Returns the gate list execute runs: the fused form when gate fusion is enabled.
+     */
+    public List<QuantumGate> compile() {
+        if (gateFusion == null) {
+            return getGates();
+        }
+        if (compiledGates == null) {
+            compiledGates = Collections.unmodifiableList(gateFusion.optimize(gates, numberOfQubits));
+        }
+        return compiledGates;
+    }
+
+    /**
+     * Runs the circuit on |0...0> and returns the final state. With a {@link StateCache}
+     * attached, a noiseless run resumes from the longest cached prefix of the compiled gate
+     * list and stores checkpoints and its final state for later runs. Without a cache, a
+     * noiseless run starts on a {@link SparseStateVector} and moves to a dense vector once the
+     * support passes the sparse threshold or a gate has no sparse kernel.
+     */
+    public StateVector run() {
+        if (stateCache == null && noiseModels.isEmpty() && sparseThreshold > 0.0) {
+            return runAdaptive();
+        }
+        StateVector state = StateVector.allocate(numberOfQubits);
+        if (stateCache == null || !noiseModels.isEmpty()) {
+            execute(state);
+            return state;
+        }
+        List<QuantumGate> program = compile();
+        String[] keys = StateCache.prefixKeys(numberOfQubits, program);
+        int start = stateCache.loadLongestPrefix(keys, state);
+        int interval = stateCache.getCheckpointInterval();
+        ParallelExecution previous = state.getParallelExecution();
+        if (parallelExecution != null) {
+            state.setParallelExecution(parallelExecution);
+        }
+        try {
+            for (int i = start; i < program.size(); i++) {
+                applyGate(program.get(i), state);
+                int done = i + 1;
+                if (done < keys.length && (done % interval == 0 || done == keys.length - 1)) {
+                    stateCache.store(keys[done], state);
+                }
+            }
+        } finally {
+            state.setParallelExecution(previous);
+        }
+        return state;
+    }
+
+    private StateVector runAdaptive() {
+        List<QuantumGate> program = compile();
+        // Registers too large for a dense vector stay sparse however full they get
+        boolean canDensify = numberOfQubits <= ChunkedStateVector.MAX_QUBITS;
+        double limit = sparseThreshold * Math.pow(2, numberOfQubits);
+        SparseStateVector sparse = new SparseStateVector(numberOfQubits);
+        for (int i = 0; i < program.size(); i++) {
+            QuantumGate gate = program.get(i);
+            if (canDensify && (sparse.getNonZeroCount() > limit || !SparseStateVector.supports(gate, numberOfQubits))) {
+                StateVector dense = sparse.toDense();
+                ParallelExecution previous = dense.getParallelExecution();
+                if (parallelExecution != null) {
+                    dense.setParallelExecution(parallelExecution);
+                }
+                try {
+                    for (int j = i; j < program.size(); j++) {
+                        applyGate(program.get(j), dense);
+                    }
+                } finally {
+                    dense.setParallelExecution(previous);
+                }
+                return dense;
+            }
+            applyGate(gate, sparse);
+        }
+        return sparse;
+    }
+
+    private void applyGate(QuantumGate gate, StateVector stateVector) {
+        if (profiler == null) {
+            gate.apply(stateVector);
+        } else {
+            profiler.apply(gate, stateVector);
+        }
+    }
+
+    /**
+     * Records every gate that run and execute apply to a state vector; null disables it.
+     */
+    public void setProfiler(CircuitProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public CircuitProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Fraction of nonzero amplitudes up to which {@link #run()} keeps the state sparse; 0
+     * always runs dense.
+     */
+    public void setSparseThreshold(double sparseThreshold) {
+        if (!(sparseThreshold >= 0.0 && sparseThreshold <= 1.0)) {
+            throw new IllegalArgumentException("Sparse threshold must be between 0 and 1.");
+        }
+        this.sparseThreshold = sparseThreshold;
+    }
+
+    public double getSparseThreshold() {
+        return sparseThreshold;
+    }
+
+    /**
+     * Shares intermediate states with other circuits through {@link #run()}; null disables it.
+     */
+    public void setStateCache(StateCache stateCache) {
+        this.stateCache = stateCache;
+    }
+
+    public StateCache getStateCache() {
+        return stateCache;
     }
 
     public void execute(double[] stateVector) {
+        if (stateVector == null || stateVector.length != (1 << numberOfQubits)) {
+            throw new IllegalArgumentException("Invalid state vector.");
+        }
+        StateVector state = StateVector.fromReal(stateVector);
+        execute(state);
+        System.arraycopy(state.copyReal(), 0, stateVector, 0, stateVector.length);
+    }
+
+    /**
+     * Runs the circuit. With noise models attached this is a single noisy trajectory; use
+     * {@link TrajectorySimulator} to average over many.
+     */
+    public void execute(StateVector stateVector) {
+        if (noiseModels.isEmpty()) {
+            execute(stateVector, null);
+            return;
+        }
+        if (noiseRandom == null) {
+            noiseRandom = new SplittableRandom();
+        }
+        execute(stateVector, noiseRandom);
+    }
+
+    /**
+     * Runs one trajectory, drawing noise events from the given generator after every gate.
+     * Gate fusion is skipped when noise is present so each original gate keeps its error
+     * opportunities.
+     */
+    public void execute(StateVector stateVector, SplittableRandom random) {
+        if (stateVector == null || stateVector.getNumberOfQubits() != numberOfQubits) {
+            throw new IllegalArgumentException("Invalid state vector.");
+        }
+        boolean noisy = random != null && !noiseModels.isEmpty();
+        ParallelExecution previous = stateVector.getParallelExecution();
+        if (parallelExecution != null) {
+            stateVector.setParallelExecution(parallelExecution);
+        }
+        try {
+            for (QuantumGate gate : noisy ? gates : compile()) {
+                applyGate(gate, stateVector);
+                if (noisy) {
+                    int[] qubits = QuantumGate.touchedQubits(gate, numberOfQubits);
+                    for (NoiseModel noiseModel : noiseModels) {
+                        noiseModel.apply(stateVector, qubits, random);
+                    }
+                }
+            }
+        } finally {
+            stateVector.setParallelExecution(previous);
+        }
+    }
+
+    /**
+     * Exact noisy simulation: every gate and noise channel is applied to the density matrix
+     * once, replacing the average over many trajectories. Intended for small registers.
+     */
+    public void execute(DensityMatrix densityMatrix) {
+        if (densityMatrix == null || densityMatrix.getNumberOfQubits() != numberOfQubits) {
+            throw new IllegalArgumentException("Invalid density matrix.");
+        }
+        ParallelExecution previous = densityMatrix.getParallelExecution();
+        if (parallelExecution != null) {
+            densityMatrix.setParallelExecution(parallelExecution);
+        }
+        try {
+            for (QuantumGate gate : noiseModels.isEmpty() ? compile() : gates) {
+                gate.apply(densityMatrix);
+                if (!noiseModels.isEmpty()) {
+                    int[] qubits = QuantumGate.touchedQubits(gate, numberOfQubits);
+                    for (NoiseModel noiseModel : noiseModels) {
+                        noiseModel.apply(densityMatrix, qubits);
+                    }
+                }
+            }
+        } finally {
+            densityMatrix.setParallelExecution(previous);
+        }
+    }
+
+    /**
+     * Splits each gate kernel over the given pool during execute; null runs single-threaded.
+     */
+    public void setParallelExecution(ParallelExecution parallelExecution) {
+        this.parallelExecution = parallelExecution;
+    }
+
+    public ParallelExecution getParallelExecution() {
+        return parallelExecution;
+    }
+
+    /**
+     * Runs the given fusion pass over the gate list before execute; null disables it.
+     */
+    public void setGateFusion(GateFusion gateFusion) {
+        this.gateFusion = gateFusion;
+        this.compiledGates = null;
+    }
+
+    public GateFusion getGateFusion() {
+        return gateFusion;
+    }
+
+    public long measure(StateVector stateVector) {
+        return measurement.measure(stateVector);
+    }
+
+    public SampleHistogram sample(StateVector stateVector, int shots) {
+        return measurement.sample(stateVector, shots);
+    }
+
+    /**
+     * Reproducible batch sampling: the same seed gives the same histogram in sequential and
+     * parallel mode.
+     */
+    public SampleHistogram sample(StateVector stateVector, int shots, long seed) {
+        return measurement.sample(stateVector, shots, seed, parallelExecution);
+    }
+
+    /**
+     * True when every gate is H, CNOT or a Pauli, so the circuit can run on a
+     * {@link StabilizerTableau} in polynomial time.
+     */
+    public boolean isClifford() {
+        return StabilizerTableau.supportsAll(gates);
+    }
+
+    /**
+     * Runs the circuit on a stabilizer tableau from |0...0>. Works for hundreds of qubits.
+     */
+    public StabilizerTableau runStabilizer() {
+        if (!isClifford()) {
+            throw new IllegalArgumentException("Circuit contains non-Clifford gates.");
+        }
+        StabilizerTableau tableau = new StabilizerTableau(numberOfQubits);
         for (QuantumGate gate : gates) {
-            gate.apply(stateVector);
+            tableau.apply(gate);
         }
+        return tableau;
+    }
+
+    /**
+     * Samples the circuit run on |0...0>, choosing the engine from the gate list: noiseless
+     * Clifford circuits run on a stabilizer tableau, anything else on the dense state vector.
+     */
+    public SampleHistogram sample(int shots, long seed) {
+        if (noiseModels.isEmpty() && isClifford() && numberOfQubits < Long.SIZE) {
+            return runStabilizer().sample(shots, seed);
+        }
+        return sample(run(), shots, seed);
+    }
+
+    public SampleHistogram sample(DensityMatrix densityMatrix, int shots, long seed) {
+        return new ShotSampler(densityMatrix.probabilities()).sample(shots, seed, parallelExecution);
     }
 
     public int getNumberOfQubits() {
@@ -16,4 +16,55 @@ public abstract class QuantumGate {
     }
 
     public abstract void apply(double[] stateVector);
+
+    /**
+     * Stable description of what the gate does, used to key {@link StateCache} entries. Gates
+     * that cannot be identified by value return null and end the cacheable prefix.
+     */
+    public String getCanonicalForm() {
+        return null;
+    }
+
+    public void apply(StateVector stateVector) {
+        // Real-valued gates are linear with real coefficients, so they act on the
+        // real and imaginary parts independently.
+        double[] part = stateVector.copyReal();
+        apply(part);
+        stateVector.setReal(part);
+        part = stateVector.copyImaginary();
+        apply(part);
+        stateVector.setImaginary(part);
+    }
+
+    /**
+     * rho -> G rho G^dagger. The default derives it from {@link #apply(StateVector)}, which is
+     * exact but costs 2 * 2^n state-vector applications; matrix gates override it.
+     */
+    public void apply(DensityMatrix densityMatrix) {
+        densityMatrix.applyOperator(this);
+    }
+
+    /**
+     * Runs the complex kernel on a real-valued state vector. Any imaginary component of the
+     * result is discarded; use {@link #apply(StateVector)} to keep it.
+     */
+    protected final void applyToReal(double[] stateVector) {
+        StateVector state = StateVector.fromReal(stateVector);
+        apply(state);
+        System.arraycopy(state.copyReal(), 0, stateVector, 0, stateVector.length);
+    }
+
+    /**
+     * Qubits a gate acts on: its declared qubits for matrix gates, the whole register otherwise.
+     */
+    static int[] touchedQubits(QuantumGate gate, int numberOfQubits) {
+        if (gate instanceof MatrixGate) {
+            return ((MatrixGate) gate).getQubits();
+        }
+        int[] all = new int[numberOfQubits];
+        for (int q = 0; q < numberOfQubits; q++) {
+            all[q] = q;
+        }
+        return all;
+    }
 }
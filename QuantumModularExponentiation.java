@@ -4,31 +4,124 @@
 
 package com.quantumcomputing;
 
-public class QuantumModularExponentiation extends QuantumGate {
+/**
+ * |x> -> |base^exponent * x mod modulus> for x < modulus; basis states at or above the
+ * modulus are left alone. When the multiplier is coprime to the modulus this is a
+ * permutation, applied in place from a cycle table that is built once per gate.
+ */
+public class QuantumModularExponentiation extends QuantumGate implements PermutationGate {
     private int base;
     private int modulus;
     private int exponent;
+    private final long multiplier;
+    private volatile PermutationTable permutationTable;
 
     public QuantumModularExponentiation(int base, int exponent, int modulus) {
         super("Quantum Modular Exponentiation");
+        if (modulus <= 1) {
+            throw new IllegalArgumentException("Modulus must be greater than 1.");
+        }
+        if (base <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("Base must be positive and exponent must be non-negative.");
+        }
         this.base = base;
         this.exponent = exponent;
         this.modulus = modulus;
+        this.multiplier = modPow(base, exponent, modulus);
+    }
+
+    @Override
+    public long permute(long index) {
+        return index < modulus ? multiplier * index % modulus : index;
+    }
+
+    /**
+     * True when the gate is unitary, i.e. gcd(base^exponent, modulus) = 1.
+     */
+    public boolean isPermutation() {
+        return gcd(multiplier, modulus) == 1;
+    }
+
+    @Override
+    public boolean isPermutationOf(int numberOfQubits) {
+        return isPermutation() && modulus <= (1L << numberOfQubits);
     }
 
     @Override
     public void apply(double[] stateVector) {
         int length = stateVector.length;
-        double[] newStateVector = new double[length];
+        if (isPermutation() && modulus <= length) {
+            PermutationTable table = permutationTable();
+            table.apply(stateVector, 1, 0, table.getCycleCount());
+            return;
+        }
 
+        double[] newStateVector = new double[length];
         for (int i = 0; i < length; i++) {
-            int newIndex = (int) (Math.pow(base, exponent) * i % modulus);
+            int newIndex = (int) (multiplier * i % modulus);
             newStateVector[newIndex] = stateVector[i];
         }
-
         System.arraycopy(newStateVector, 0, stateVector, 0, length);
     }
 
+    @Override
+    public void apply(StateVector stateVector) {
+        if (stateVector instanceof SparseStateVector && isPermutationOf(stateVector.getNumberOfQubits())) {
+            ((SparseStateVector) stateVector).applyPermutation(this);
+        } else if (isPermutationOf(stateVector.getNumberOfQubits())) {
+            stateVector.applyPermutation(permutationTable());
+        } else {
+            super.apply(stateVector);
+        }
+    }
+
+    @Override
+    public void apply(DensityMatrix densityMatrix) {
+        if (isPermutationOf(densityMatrix.getNumberOfQubits())) {
+            densityMatrix.applyPermutation(this);
+        } else {
+            super.apply(densityMatrix);
+        }
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "ModExp(" + base + ", " + exponent + ", " + modulus + ")";
+    }
+
+    private PermutationTable permutationTable() {
+        PermutationTable table = permutationTable;
+        if (table == null) {
+            table = PermutationTable.build(this, modulus);
+            permutationTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * base^exponent mod modulus by square-and-multiply; exact for moduli below 2^31.
+     */
+    static long modPow(long base, long exponent, long modulus) {
+        long result = 1 % modulus;
+        long square = Math.floorMod(base, modulus);
+        for (long e = exponent; e > 0; e >>= 1) {
+            if ((e & 1) != 0) {
+                result = result * square % modulus;
+            }
+            square = square * square % modulus;
+        }
+        return result;
+    }
+
+    static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+
     public int getBase() {
         return base;
     }
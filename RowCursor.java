@@ -0,0 +1,192 @@
+// Copyright (c) Devin Benard Royal - All Rights Reserved.
+// Copyright (c) Devin Benard Royal - 2024
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Lazy, paginated walk over the rows of a {@link StorageEngine} whose keys lie in
+ * [fromKey, toKey], fetching batchSize rows per page in the engine's scan order. Pages come
+ * from the engine's committed rows, or from another {@link Source} over the same positions
+ * such as a transaction's view.
+ *
+ * {@link #getResumeToken()} identifies the next row to return; a cursor opened later with that
+ * token picks up exactly there, even after the engine has resized or deleted rows. Rows present
+ * for the whole walk are returned once; rows written concurrently may or may not be.
+ */
+class RowCursor implements Iterator<Map.Entry<Integer, String>> {
+    static final int DEFAULT_BATCH_SIZE = 1024;
+    // Spliterators stop splitting once a range holds about this many rows
+    private static final long MIN_SPLIT_ROWS = 4 * DEFAULT_BATCH_SIZE;
+
+    private final StorageEngine storage;
+    private final Source source;
+    private final IntPredicate keys;
+    private final int batchSize;
+    private final long end;
+    private long position;
+    private List<Row> page = new ArrayList<>();
+    private int next;
+
+    RowCursor(StorageEngine storage, int fromKey, int toKey, int batchSize, long resumeToken) {
+        this(storage, storage::scan, fromKey, toKey, batchSize, resumeToken);
+    }
+
+    RowCursor(StorageEngine storage, Source source, int fromKey, int toKey, int batchSize, long resumeToken) {
+        this(storage, source, keyRange(fromKey, toKey), batchSize, resumeToken, storage.scanEnd());
+    }
+
+    private RowCursor(StorageEngine storage, Source source, IntPredicate keys, int batchSize, long position, long end) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        if (position < 0 || position > end) {
+            throw new IllegalArgumentException("Invalid resume token.");
+        }
+        this.storage = storage;
+        this.source = source;
+        this.keys = keys;
+        this.batchSize = batchSize;
+        this.position = position;
+        this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == page.size()) {
+            if (position >= end) {
+                return false;
+            }
+            fetch();
+        }
+        return true;
+    }
+
+    @Override
+    public Map.Entry<Integer, String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(next++);
+    }
+
+    /**
+     * The rest of the current page, or the next page; empty once the cursor is exhausted.
+     */
+    List<Map.Entry<Integer, String>> nextBatch() {
+        if (!hasNext()) {
+            return new ArrayList<>();
+        }
+        List<Map.Entry<Integer, String>> batch = new ArrayList<Map.Entry<Integer, String>>(page.subList(next, page.size()));
+        next = page.size();
+        return batch;
+    }
+
+    /**
+     * Token to reopen the cursor with to continue after the last row returned.
+     */
+    long getResumeToken() {
+        return next < page.size() ? page.get(next).position : position;
+    }
+
+    /**
+     * Splittable over disjoint position ranges, for exporting the rows in parallel.
+     */
+    static Spliterator<Map.Entry<Integer, String>> spliterator(StorageEngine storage, int fromKey, int toKey, int batchSize) {
+        return new RowSpliterator(new RowCursor(storage, fromKey, toKey, batchSize, 0L));
+    }
+
+    private void fetch() {
+        List<Row> rows = new ArrayList<>(batchSize);
+        position = source.scan(position, end, keys, batchSize,
+                (at, key, value) -> rows.add(new Row(at, key, new String(value, StandardCharsets.UTF_8))));
+        page = rows;
+        next = 0;
+    }
+
+    private static IntPredicate keyRange(int fromKey, int toKey) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("Key range is empty.");
+        }
+        if (fromKey == Integer.MIN_VALUE && toKey == Integer.MAX_VALUE) {
+            return key -> true;
+        }
+        return key -> key >= fromKey && key <= toKey;
+    }
+
+    /**
+     * Same contract as {@link StorageEngine#scan}, except that a page may hold more than limit rows.
+     */
+    interface Source {
+        long scan(long position, long end, IntPredicate keys, int limit, StorageEngine.ScanVisitor visitor);
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Row extends AbstractMap.SimpleImmutableEntry<Integer, String> {
+        private final long position;
+
+        Row(long position, int key, String value) {
+            super(key, value);
+            this.position = position;
+        }
+    }
+
+    private static final class RowSpliterator implements Spliterator<Map.Entry<Integer, String>> {
+        private RowCursor cursor;
+
+        RowSpliterator(RowCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<Integer, String>> action) {
+            if (!cursor.hasNext()) {
+                return false;
+            }
+            action.accept(cursor.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<Integer, String>> action) {
+            while (cursor.hasNext()) {
+                for (Map.Entry<Integer, String> row : cursor.nextBatch()) {
+                    action.accept(row);
+                }
+            }
+        }
+
+        /**
+         * Halves the remaining position range; only before a page has been buffered.
+         */
+        @Override
+        public Spliterator<Map.Entry<Integer, String>> trySplit() {
+            RowCursor current = cursor;
+            if (current.next < current.page.size() || estimateSize() < MIN_SPLIT_ROWS) {
+                return null;
+            }
+            long middle = current.position + (current.end - current.position) / 2;
+            cursor = new RowCursor(current.storage, current.source, current.keys, current.batchSize, middle, current.end);
+            return new RowSpliterator(new RowCursor(current.storage, current.source, current.keys, current.batchSize,
+                    current.position, middle));
+        }
+
+        @Override
+        public long estimateSize() {
+            double share = (double) (cursor.end - cursor.position) / cursor.storage.scanEnd();
+            return (long) Math.ceil(cursor.storage.size() * share) + cursor.page.size() - cursor.next;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL | CONCURRENT;
+        }
+    }
+}
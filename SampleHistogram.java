@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measurement counts from a batch of shots, ordered by basis-state index.
+ */
+public class SampleHistogram {
+    private final long[] outcomes;
+    private final long[] counts;
+    private final long shots;
+
+    SampleHistogram(long[] outcomes, long[] counts) {
+        this.outcomes = outcomes;
+        this.counts = counts;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.shots = total;
+    }
+
+    /**
+     * Builds a histogram from individual shot outcomes, sorting them in place.
+     */
+    static SampleHistogram fromOutcomes(long[] shotOutcomes, boolean parallelSort) {
+        if (parallelSort) {
+            Arrays.parallelSort(shotOutcomes);
+        } else {
+            Arrays.sort(shotOutcomes);
+        }
+        long[] outcomes = new long[shotOutcomes.length];
+        long[] counts = new long[shotOutcomes.length];
+        int size = 0;
+        for (int i = 0; i < shotOutcomes.length; i++) {
+            if (size > 0 && outcomes[size - 1] == shotOutcomes[i]) {
+                counts[size - 1]++;
+            } else {
+                outcomes[size] = shotOutcomes[i];
+                counts[size++] = 1;
+            }
+        }
+        return new SampleHistogram(Arrays.copyOf(outcomes, size), Arrays.copyOf(counts, size));
+    }
+
+    public static SampleHistogram merge(List<SampleHistogram> histograms) {
+        Map<Long, Long> totals = new TreeMap<>();
+        for (SampleHistogram histogram : histograms) {
+            for (int i = 0; i < histogram.size(); i++) {
+                totals.merge(histogram.outcomes[i], histogram.counts[i], Long::sum);
+            }
+        }
+        long[] outcomes = new long[totals.size()];
+        long[] counts = new long[totals.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+            outcomes[i] = entry.getKey();
+            counts[i++] = entry.getValue();
+        }
+        return new SampleHistogram(outcomes, counts);
+    }
+
+    public int size() {
+        return outcomes.length;
+    }
+
+    public long getShots() {
+        return shots;
+    }
+
+    public long getOutcome(int i) {
+        return outcomes[i];
+    }
+
+    public long getCount(int i) {
+        return counts[i];
+    }
+
+    public long count(long outcome) {
+        int i = Arrays.binarySearch(outcomes, outcome);
+        return i >= 0 ? counts[i] : 0;
+    }
+
+    public long mostFrequent() {
+        if (outcomes.length == 0) {
+            throw new IllegalStateException("Histogram is empty.");
+        }
+        int best = 0;
+        for (int i = 1; i < counts.length; i++) {
+            if (counts[i] > counts[best]) {
+                best = i;
+            }
+        }
+        return outcomes[best];
+    }
+
+    public Map<Long, Long> toMap() {
+        Map<Long, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            map.put(outcomes[i], counts[i]);
+        }
+        return map;
+    }
+}
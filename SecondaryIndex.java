@@ -0,0 +1,141 @@
+// Copyright (c) Devin Benard Royal - All Rights Reserved.
+// Copyright (c) Devin Benard Royal - 2024
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary index from row values to row ids, kept up to date as rows commit.
+ *
+ * A rewritten row is briefly indexed under both its old and new value, and lookups inside a
+ * transaction must see its snapshot, so callers recheck every candidate against the row itself;
+ * an index only ever holds a superset of the matching ids.
+ */
+abstract class SecondaryIndex {
+
+    /**
+     * Equality lookups in constant time; no range queries.
+     */
+    static SecondaryIndex hash() {
+        return new HashIndex();
+    }
+
+    /**
+     * Equality and range lookups in logarithmic time, over a concurrent skip list.
+     */
+    static SecondaryIndex ordered() {
+        return new OrderedIndex();
+    }
+
+    abstract void add(String value, int id);
+
+    abstract void remove(String value, int id);
+
+    abstract List<Integer> equalTo(String value);
+
+    /**
+     * Ids of rows with from <= value < to; a null bound is open.
+     */
+    List<Integer> range(String from, String to) {
+        throw new UnsupportedOperationException("Index does not support range queries.");
+    }
+
+    boolean supportsRange() {
+        return false;
+    }
+
+    private static final class HashIndex extends SecondaryIndex {
+        private final Map<String, Set<Integer>> ids = new ConcurrentHashMap<>();
+
+        @Override
+        void add(String value, int id) {
+            // compute runs atomically per key, so an emptied set is never dropped under an add
+            ids.compute(value, (key, set) -> {
+                Set<Integer> target = set == null ? ConcurrentHashMap.newKeySet() : set;
+                target.add(id);
+                return target;
+            });
+        }
+
+        @Override
+        void remove(String value, int id) {
+            ids.computeIfPresent(value, (key, set) -> {
+                set.remove(id);
+                return set.isEmpty() ? null : set;
+            });
+        }
+
+        @Override
+        List<Integer> equalTo(String value) {
+            Set<Integer> set = ids.get(value);
+            return set == null ? new ArrayList<>() : new ArrayList<>(set);
+        }
+    }
+
+    /**
+     * One skip-list entry per (value, id) pair, so adds and removes never share mutable state.
+     */
+    private static final class OrderedIndex extends SecondaryIndex {
+        private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+        @Override
+        void add(String value, int id) {
+            entries.add(new Entry(value, id));
+        }
+
+        @Override
+        void remove(String value, int id) {
+            entries.remove(new Entry(value, id));
+        }
+
+        @Override
+        List<Integer> equalTo(String value) {
+            return ids(entries.subSet(new Entry(value, Integer.MIN_VALUE), true, new Entry(value, Integer.MAX_VALUE), true));
+        }
+
+        @Override
+        List<Integer> range(String from, String to) {
+            NavigableSet<Entry> view = entries;
+            if (from != null) {
+                view = view.tailSet(new Entry(from, Integer.MIN_VALUE), true);
+            }
+            if (to != null) {
+                view = view.headSet(new Entry(to, Integer.MIN_VALUE), false);
+            }
+            return ids(view);
+        }
+
+        @Override
+        boolean supportsRange() {
+            return true;
+        }
+
+        private static List<Integer> ids(Set<Entry> view) {
+            List<Integer> ids = new ArrayList<>();
+            for (Entry entry : view) {
+                ids.add(entry.id);
+            }
+            return ids;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String value;
+        private final int id;
+
+        Entry(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int order = value.compareTo(other.value);
+            return order != 0 ? order : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Worker process of a {@link DistributedStateVector}: holds one shard of the amplitudes and
+ * runs the coordinator's commands on it.
+ *
+ * Usage: java com.quantumcomputing.ShardWorker port [threads]
+ *
+ * Each session starts with the coordinator's INIT, after which the worker opens a data port
+ * and, on PEERS, connects to every higher-ranked worker and accepts every lower-ranked one.
+ * Qubit swaps stream 2^16-amplitude chunks both ways over that pair's socket, sending on a
+ * helper thread while receiving on the command thread. Packing, unpacking and register phases
+ * run over the shard in ranges through its ParallelExecution.
+ *
+ * A failure on a peer socket is reported to the coordinator as an ERROR reply; a broken
+ * coordinator connection ends only that session.
+ */
+public class ShardWorker {
+    static final int EXCHANGE_CHUNK = 1 << 16;
+    static final int RANGE_QUBITS = 14;
+
+    // Shared by every session's shard; null when running single-threaded
+    private final ParallelExecution parallelExecution;
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int rank;
+    private int localQubits;
+    private StateVector shard;
+    private ServerSocketChannel dataServer;
+    private SocketChannel[] peers;
+
+    public ShardWorker(int threads) {
+        this.parallelExecution = threads > 1 ? new ParallelExecution(threads) : null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java com.quantumcomputing.ShardWorker port [threads]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        new ShardWorker(threads).serve(port);
+    }
+
+    /**
+     * Serves coordinator sessions one after another until the process is killed. All sessions
+     * share the worker's pool.
+     */
+    public void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port)) {
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    socket.setTcpNoDelay(true);
+                    session(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                            new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+                } catch (EOFException e) {
+                    // Coordinator went away without CLOSE
+                } catch (IOException e) {
+                    System.err.println("ShardWorker: session ended: " + e);
+                } finally {
+                    release();
+                }
+            }
+        }
+    }
+
+    private void session(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            byte command = in.readByte();
+            if (command == DistributedStateVector.CLOSE) {
+                return;
+            }
+            ByteBuffer reply = ByteBuffer.allocate(16);
+            try {
+                handle(command, in, reply);
+            } catch (RuntimeException | ExecutionException | InterruptedException e) {
+                out.writeByte(DistributedStateVector.ERROR);
+                out.writeUTF(String.valueOf(e));
+                out.flush();
+                continue;
+            }
+            out.writeByte(DistributedStateVector.OK);
+            out.write(reply.array(), 0, reply.position());
+            out.flush();
+        }
+    }
+
+    private void handle(byte command, DataInputStream in, ByteBuffer reply)
+            throws IOException, ExecutionException, InterruptedException {
+        switch (command) {
+            case DistributedStateVector.INIT: {
+                rank = in.readInt();
+                int shardQubits = in.readInt();
+                localQubits = in.readInt();
+                shard = StateVector.allocate(localQubits);
+                if (rank != 0) {
+                    shard.set(0, 0.0, 0.0);
+                }
+                if (parallelExecution != null) {
+                    shard.setParallelExecution(parallelExecution);
+                }
+                peers = new SocketChannel[1 << shardQubits];
+                dataServer = ServerSocketChannel.open();
+                dataServer.bind(new InetSocketAddress(0), peers.length);
+                reply.putInt(dataServer.socket().getLocalPort());
+                break;
+            }
+            case DistributedStateVector.PEERS: {
+                String[] hosts = new String[peers.length];
+                int[] ports = new int[peers.length];
+                for (int r = 0; r < peers.length; r++) {
+                    hosts[r] = in.readUTF();
+                    ports[r] = in.readInt();
+                }
+                try {
+                    connectPeers(hosts, ports);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Connecting to peers failed.", e);
+                }
+                break;
+            }
+            case DistributedStateVector.FILL:
+                shard.fill(in.readDouble(), in.readDouble());
+                break;
+            case DistributedStateVector.GET: {
+                long index = in.readLong();
+                reply.putDouble(shard.getReal(index)).putDouble(shard.getImaginary(index));
+                break;
+            }
+            case DistributedStateVector.SET:
+                shard.set(in.readLong(), in.readDouble(), in.readDouble());
+                break;
+            case DistributedStateVector.CONTROLLED: {
+                long localControls = in.readLong();
+                int globalControls = in.readInt();
+                int target = in.readInt();
+                double[] matrix = readDoubles(in, 8);
+                if ((rank & globalControls) == globalControls) {
+                    shard.applyControlled(localControls, target, matrix);
+                }
+                break;
+            }
+            case DistributedStateVector.CONTROLLED_NOT: {
+                long localControls = in.readLong();
+                int globalControls = in.readInt();
+                int target = in.readInt();
+                if ((rank & globalControls) == globalControls) {
+                    shard.applyControlledNot(localControls, target);
+                }
+                break;
+            }
+            case DistributedStateVector.MATRIX: {
+                int[] qubits = new int[in.readInt()];
+                for (int j = 0; j < qubits.length; j++) {
+                    qubits[j] = in.readInt();
+                }
+                int size = 1 << qubits.length;
+                shard.applyMatrix(qubits, readDoubles(in, size * size * 2));
+                break;
+            }
+            case DistributedStateVector.SWAP: {
+                int globalBit = in.readInt();
+                int localQubit = in.readInt();
+                swap(globalBit, localQubit);
+                break;
+            }
+            case DistributedStateVector.REGISTER_PHASE: {
+                double sign = in.readDouble();
+                int[] positions = new int[in.readInt()];
+                for (int j = 0; j < positions.length; j++) {
+                    positions[j] = in.readInt();
+                }
+                applyRegisterPhase(sign, positions);
+                break;
+            }
+            case DistributedStateVector.SUM: {
+                double[] sum = shard.sum();
+                reply.putDouble(sum[0]).putDouble(sum[1]);
+                break;
+            }
+            case DistributedStateVector.NORM: {
+                double norm = shard.norm();
+                reply.putDouble(norm * norm);
+                break;
+            }
+            case DistributedStateVector.REFLECT:
+                shard.reflectAbout(in.readDouble(), in.readDouble());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command " + command + ".");
+        }
+    }
+
+    private void connectPeers(String[] hosts, int[] ports) throws IOException {
+        // Connecting completes in the peer's accept backlog, so connect first, then accept
+        for (int r = rank + 1; r < peers.length; r++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(hosts[r], ports[r]));
+            channel.socket().setTcpNoDelay(true);
+            ByteBuffer hello = ByteBuffer.allocate(Integer.BYTES).putInt(0, rank);
+            while (hello.hasRemaining()) {
+                channel.write(hello);
+            }
+            peers[r] = channel;
+        }
+        for (int accepted = 0; accepted < rank; accepted++) {
+            SocketChannel channel = dataServer.accept();
+            channel.socket().setTcpNoDelay(true);
+            ByteBuffer hello = ByteBuffer.allocate(Integer.BYTES);
+            readFully(channel, hello);
+            peers[hello.getInt(0)] = channel;
+        }
+    }
+
+    /**
+     * Swaps global qubit globalBit with local qubit localQubit. This worker and its partner
+     * both send their amplitudes whose local bit differs from this worker's rank bit and
+     * receive the partner's into the same positions. A failed exchange closes the peer
+     * connection, since the stream is no longer in step, and is reported as an error.
+     */
+    private void swap(int globalBit, int localQubit) throws ExecutionException, InterruptedException {
+        int partner = rank ^ (1 << globalBit);
+        long moving = (long) (1 - ((rank >>> globalBit) & 1)) << localQubit;
+        long half = shard.getDimension() >>> 1;
+        SocketChannel channel = peers[partner];
+        if (channel == null) {
+            throw new IllegalStateException("Connection to worker " + partner + " was lost.");
+        }
+        ByteBuffer outgoing = ByteBuffer.allocateDirect(EXCHANGE_CHUNK * 2 * Double.BYTES);
+        ByteBuffer incoming = ByteBuffer.allocateDirect(EXCHANGE_CHUNK * 2 * Double.BYTES);
+        try {
+            for (long from = 0; from < half; from += EXCHANGE_CHUNK) {
+                long first = from;
+                int count = (int) Math.min(EXCHANGE_CHUNK, half - from);
+                shard.forEachRange(count, (chunk, start, end) -> {
+                    for (int k = start; k < end; k++) {
+                        long index = StateVector.insertZeroBit(first + k, localQubit) | moving;
+                        outgoing.putDouble(k * 2 * Double.BYTES, shard.getReal(index));
+                        outgoing.putDouble((k * 2 + 1) * Double.BYTES, shard.getImaginary(index));
+                    }
+                });
+                outgoing.clear().limit(count * 2 * Double.BYTES);
+                Future<?> sending = sender.submit(() -> {
+                    while (outgoing.hasRemaining()) {
+                        channel.write(outgoing);
+                    }
+                    return null;
+                });
+                incoming.clear().limit(count * 2 * Double.BYTES);
+                readFully(channel, incoming);
+                sending.get();
+                shard.forEachRange(count, (chunk, start, end) -> {
+                    for (int k = start; k < end; k++) {
+                        long index = StateVector.insertZeroBit(first + k, localQubit) | moving;
+                        shard.set(index, incoming.getDouble(k * 2 * Double.BYTES),
+                                incoming.getDouble((k * 2 + 1) * Double.BYTES));
+                    }
+                });
+            }
+        } catch (IOException e) {
+            dropPeer(partner);
+            throw new UncheckedIOException("Exchange with worker " + partner + " failed.", e);
+        } catch (ExecutionException e) {
+            dropPeer(partner);
+            throw e;
+        }
+    }
+
+    /**
+     * Multiplies amplitudes whose logical target bit is set by exp(i * sign * pi * x / 2^t),
+     * x the logical register value below the target; positions[j] is the physical position of
+     * logical qubit j and the last entry is the target.
+     *
+     * x is assembled from per-byte lookup tables of the local index, mapping each physical byte
+     * to the logical bits it carries, plus the constant contribution of this worker's rank bits.
+     */
+    private void applyRegisterPhase(double sign, int[] positions) {
+        int target = positions.length - 1;
+        double unit = sign * Math.PI / (1L << target);
+        long high = (long) rank << localQubits;
+        long targetBit = 1L << positions[target];
+        boolean targetGlobal = positions[target] >= localQubits;
+        if (targetGlobal && (high & targetBit) == 0) {
+            return;
+        }
+        long globalPart = 0;
+        long[][] tables = new long[(localQubits + 7) / 8][256];
+        for (int j = 0; j < target; j++) {
+            int position = positions[j];
+            if (position >= localQubits) {
+                globalPart |= ((high >>> position) & 1L) << j;
+                continue;
+            }
+            long[] table = tables[position >>> 3];
+            for (int value = 0; value < 256; value++) {
+                if (((value >>> (position & 7)) & 1) != 0) {
+                    table[value] |= 1L << j;
+                }
+            }
+        }
+        long constant = globalPart;
+        int rangeQubits = Math.min(localQubits, RANGE_QUBITS);
+        int ranges = (int) (shard.getDimension() >>> rangeQubits);
+        shard.forEachRange(ranges, (chunk, from, to) -> {
+            for (long i = (long) from << rangeQubits; i < (long) to << rangeQubits; i++) {
+                if (!targetGlobal && (i & targetBit) == 0) {
+                    continue;
+                }
+                long x = constant;
+                for (int b = 0; b < tables.length; b++) {
+                    x |= tables[b][(int) (i >>> (b << 3)) & 0xFF];
+                }
+                double angle = unit * x;
+                double cos = Math.cos(angle);
+                double sin = Math.sin(angle);
+                double re = shard.getReal(i);
+                double im = shard.getImaginary(i);
+                shard.set(i, re * cos - im * sin, re * sin + im * cos);
+            }
+        });
+    }
+
+    private void dropPeer(int partner) {
+        closeQuietly(peers[partner]);
+        peers[partner] = null;
+    }
+
+    private void release() {
+        shard = null;
+        if (peers != null) {
+            for (SocketChannel peer : peers) {
+                closeQuietly(peer);
+            }
+            peers = null;
+        }
+        closeQuietly(dataServer);
+        dataServer = null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Peer closed the exchange.");
+            }
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, int count) throws IOException {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+}
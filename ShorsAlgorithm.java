@@ -4,10 +4,13 @@
 
 package com.quantumcomputing;
 
+import java.math.BigInteger;
+
 public class ShorsAlgorithm {
     private int numberToFactor;
     private QuantumCircuit quantumCircuit;
     private int numberOfQubits;
+    private int base;
 
     public ShorsAlgorithm(int numberToFactor) {
         this.numberToFactor = numberToFactor;
@@ -16,22 +19,57 @@ public class ShorsAlgorithm {
     }
 
     public void initialize() {
+        initialize((int) (Math.random() * (numberToFactor - 2)) + 2);
+    }
+
+    /**
+     * Builds the circuit for a fixed base in [2, N), so runs are reproducible.
+     */
+    public void initialize(int base) {
+        if (base < 2 || base >= numberToFactor) {
+            throw new IllegalArgumentException("Base must lie in [2, N).");
+        }
         // Initialize the quantum circuit with necessary gates for Shor's algorithm
-        int randomBase = (int) (Math.random() * (numberToFactor - 2)) + 2;
-        quantumCircuit.addGate(new QuantumModularExponentiation(randomBase, 1, numberToFactor));
-        quantumCircuit.addGate(new PhaseEstimation(numberOfQubits, new QuantumModularExponentiation(randomBase, 1, numberToFactor)));
+        this.base = base;
+        // Uniform superposition as an explicit Hadamard layer, so it is a cacheable prefix
+        for (int i = 0; i < numberOfQubits; i++) {
+            quantumCircuit.addGate(new HadamardGate(i));
+        }
+        quantumCircuit.addGate(new QuantumModularExponentiation(base, 1, numberToFactor));
+        quantumCircuit.addGate(new PhaseEstimation(numberOfQubits, new QuantumModularExponentiation(base, 1, numberToFactor)));
     }
 
     public int execute() {
-        double[] stateVector = new double[1 << numberOfQubits];
-        for (int i = 0; i < stateVector.length; i++) {
-            stateVector[i] = 1.0 / Math.sqrt(stateVector.length);
+        StateVector stateVector = quantumCircuit.run();
+        int measuredValue = (int) quantumCircuit.measure(stateVector);
+
+        return ClassicalPostProcessing.findPeriod(measuredValue, numberOfQubits);
+    }
+
+    /**
+     * Samples the circuit and recovers the period exactly from the whole histogram. Returns 0
+     * when the base shares a factor with N or no outcome leads to the period.
+     */
+    public long findPeriod(int shots, long seed) {
+        BigInteger modulus = BigInteger.valueOf(numberToFactor);
+        BigInteger candidateBase = BigInteger.valueOf(base);
+        if (!candidateBase.gcd(modulus).equals(BigInteger.ONE)) {
+            return 0;
         }
+        SampleHistogram histogram = quantumCircuit.sample(shots, seed);
+        BigInteger period = ClassicalPostProcessing.findPeriod(histogram, numberOfQubits, candidateBase, modulus);
+        return period == null ? 0 : period.longValueExact();
+    }
 
-        quantumCircuit.execute(stateVector);
-        int measuredValue = quantumCircuit.measure(stateVector);
+    public int getBase() {
+        return base;
+    }
 
-        return ClassicalPostProcessing.findPeriod(measuredValue, numberOfQubits);
+    /**
+     * Lets repeated runs share the states of identical gate prefixes.
+     */
+    public void setStateCache(StateCache stateCache) {
+        quantumCircuit.setStateCache(stateCache);
     }
 
     public int getNumberToFactor() {
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws many measurement shots from one state vector.
+ *
+ * Registers of up to 2^26 amplitudes get a Vose alias table, built once in O(2^n), after
+ * which every shot costs two random draws. Larger (off-heap) registers sort the shots'
+ * uniforms and resolve them all in a single sweep over the amplitudes, so no table of
+ * 2^n entries is needed. A {@link SparseStateVector} gets an alias table over its support
+ * alone, so its shots are cheap at any register size. Shots are drawn in fixed blocks, each with its own SplittableRandom
+ * split from the seed in block order, so a given seed gives the same histogram on any
+ * number of threads.
+ */
+public class ShotSampler {
+    public static final int ALIAS_TABLE_MAX_QUBITS = 26;
+    static final int SHOT_BLOCK = 1 << 13;
+
+    private final StateVector stateVector;
+    private final double totalProbability;
+    private long[] support;
+    private double[] threshold;
+    private int[] alias;
+
+    public ShotSampler(StateVector stateVector) {
+        if (stateVector instanceof SparseStateVector) {
+            // The alias table covers the support only, whatever the register size
+            this.stateVector = null;
+            this.support = ((SparseStateVector) stateVector).support();
+            double[] probabilities = new double[support.length];
+            for (int i = 0; i < support.length; i++) {
+                probabilities[i] = stateVector.getProbability(support[i]);
+            }
+            this.totalProbability = buildAliasTable(probabilities);
+        } else if (stateVector.getNumberOfQubits() <= ALIAS_TABLE_MAX_QUBITS) {
+            this.stateVector = null;
+            this.totalProbability = buildAliasTable(probabilities(stateVector));
+        } else {
+            this.stateVector = stateVector;
+            this.totalProbability = totalProbability(stateVector);
+        }
+    }
+
+    /**
+     * Samples from explicit basis-state probabilities, e.g. a density matrix's diagonal.
+     */
+    public ShotSampler(double[] probabilities) {
+        this.stateVector = null;
+        this.totalProbability = buildAliasTable(probabilities.clone());
+    }
+
+    public SampleHistogram sample(int shots, long seed) {
+        return sample(shots, seed, null);
+    }
+
+    public SampleHistogram sample(int shots, long seed, ParallelExecution parallelExecution) {
+        if (shots <= 0) {
+            throw new IllegalArgumentException("Number of shots must be positive.");
+        }
+        if (totalProbability <= 0.0) {
+            throw new IllegalStateException("State vector has zero norm.");
+        }
+        SplittableRandom[] streams = streams(shots, seed);
+        if (alias != null) {
+            long[] outcomes = new long[shots];
+            forEachBlock(shots, parallelExecution, (block, from, to) -> {
+                SplittableRandom random = streams[block];
+                for (int shot = from; shot < to; shot++) {
+                    int column = random.nextInt(alias.length);
+                    int outcome = random.nextDouble() < threshold[column] ? column : alias[column];
+                    outcomes[shot] = support == null ? outcome : support[outcome];
+                }
+            });
+            return SampleHistogram.fromOutcomes(outcomes, parallelExecution != null);
+        }
+
+        double[] uniforms = new double[shots];
+        forEachBlock(shots, parallelExecution, (block, from, to) -> {
+            SplittableRandom random = streams[block];
+            for (int shot = from; shot < to; shot++) {
+                uniforms[shot] = random.nextDouble() * totalProbability;
+            }
+        });
+        if (parallelExecution != null) {
+            Arrays.parallelSort(uniforms);
+        } else {
+            Arrays.sort(uniforms);
+        }
+        return sweep(uniforms);
+    }
+
+    private SampleHistogram sweep(double[] uniforms) {
+        long[] outcomes = new long[uniforms.length];
+        long[] counts = new long[uniforms.length];
+        int size = 0;
+        int next = 0;
+        double cumulative = 0.0;
+        long lastNonZero = 0;
+        long dimension = stateVector.getDimension();
+        for (long i = 0; i < dimension && next < uniforms.length; i++) {
+            double probability = stateVector.getProbability(i);
+            if (probability == 0.0) {
+                continue;
+            }
+            lastNonZero = i;
+            cumulative += probability;
+            int start = next;
+            while (next < uniforms.length && uniforms[next] < cumulative) {
+                next++;
+            }
+            if (next > start) {
+                outcomes[size] = i;
+                counts[size++] = next - start;
+            }
+        }
+        if (next < uniforms.length) {
+            // Rounding left the top of the range uncovered; it belongs to the last outcome
+            if (size > 0 && outcomes[size - 1] == lastNonZero) {
+                counts[size - 1] += uniforms.length - next;
+            } else {
+                outcomes[size] = lastNonZero;
+                counts[size++] = uniforms.length - next;
+            }
+        }
+        return new SampleHistogram(Arrays.copyOf(outcomes, size), Arrays.copyOf(counts, size));
+    }
+
+    private static double[] probabilities(StateVector stateVector) {
+        double[] probabilities = new double[(int) stateVector.getDimension()];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = stateVector.getProbability(i);
+        }
+        return probabilities;
+    }
+
+    private double buildAliasTable(double[] scaled) {
+        int length = scaled.length;
+        double total = 0.0;
+        for (int i = 0; i < length; i++) {
+            scaled[i] = Math.max(scaled[i], 0.0);
+            total += scaled[i];
+        }
+        threshold = new double[length];
+        alias = new int[length];
+        if (total <= 0.0) {
+            return total;
+        }
+        int[] small = new int[length];
+        int[] large = new int[length];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < length; i++) {
+            scaled[i] = scaled[i] * length / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            threshold[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        while (largeCount > 0) {
+            int column = large[--largeCount];
+            threshold[column] = 1.0;
+            alias[column] = column;
+        }
+        while (smallCount > 0) {
+            int column = small[--smallCount];
+            threshold[column] = 1.0;
+            alias[column] = column;
+        }
+        return total;
+    }
+
+    private static double totalProbability(StateVector stateVector) {
+        double norm = stateVector.norm();
+        return norm * norm;
+    }
+
+    private static SplittableRandom[] streams(int shots, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[(shots + SHOT_BLOCK - 1) / SHOT_BLOCK];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = root.split();
+        }
+        return streams;
+    }
+
+    private static void forEachBlock(int shots, ParallelExecution parallelExecution, ParallelExecution.ChunkTask task) {
+        ParallelExecution blocks = parallelExecution == null
+                ? null
+                : new ParallelExecution(parallelExecution.getPool(), SHOT_BLOCK);
+        if (blocks == null) {
+            for (int block = 0, from = 0; from < shots; block++, from += SHOT_BLOCK) {
+                task.run(block, from, Math.min(shots, from + SHOT_BLOCK));
+            }
+        } else {
+            blocks.forEachChunk(shots, task);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * State vector that stores only its nonzero amplitudes, for circuits whose states stay close
+ * to the computational basis: basis preparation, CNOT/Toffoli arithmetic, modular
+ * exponentiation and oracles on a few marked states.
+ *
+ * Amplitudes live in an open-addressing table with linear probing, long keys and interleaved
+ * re/im values, so memory and gate cost scale with the support instead of 2^n. Amplitudes
+ * whose squared magnitude falls below {@link #ZERO_TOLERANCE} (rounding residue of cancelled
+ * terms) are dropped. Kernels run single-threaded.
+ */
+public class SparseStateVector extends StateVector {
+    public static final double ZERO_TOLERANCE = 1e-30;
+    public static final int MAX_CAPACITY = 1 << 29;
+    private static final int MIN_CAPACITY = 16;
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private double[] values;
+    private int size;
+
+    public SparseStateVector(int numberOfQubits) {
+        super(numberOfQubits);
+        allocateTable(MIN_CAPACITY);
+        put(0, 1.0, 0.0);
+    }
+
+    /**
+     * True when the gate has a kernel whose cost scales with the support: matrix gates,
+     * basis permutations and phase oracles that list their marked states.
+     */
+    public static boolean supports(QuantumGate gate, int numberOfQubits) {
+        if (gate instanceof MatrixGate) {
+            return true;
+        }
+        if (gate instanceof PermutationGate) {
+            return ((PermutationGate) gate).isPermutationOf(numberOfQubits);
+        }
+        return gate instanceof GroverOracle && ((GroverOracle) gate).getMarkedStates() != null;
+    }
+
+    public int getNonZeroCount() {
+        return size;
+    }
+
+    /**
+     * Copies the amplitudes into a dense vector from {@link StateVector#allocate(int)}.
+     */
+    public StateVector toDense() {
+        StateVector dense = StateVector.allocate(numberOfQubits);
+        dense.set(0, 0.0, 0.0);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                dense.set(keys[slot], values[slot << 1], values[(slot << 1) + 1]);
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * The basis states with nonzero amplitude, in table order.
+     */
+    long[] support() {
+        long[] support = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                support[count++] = key;
+            }
+        }
+        return support;
+    }
+
+    @Override
+    public double getReal(long index) {
+        int slot = find(keys, index);
+        return slot < 0 ? 0.0 : values[slot << 1];
+    }
+
+    @Override
+    public double getImaginary(long index) {
+        int slot = find(keys, index);
+        return slot < 0 ? 0.0 : values[(slot << 1) + 1];
+    }
+
+    @Override
+    public void set(long index, double re, double im) {
+        if (index < 0 || index >= dimension) {
+            throw new IllegalArgumentException("Basis state out of range: " + index);
+        }
+        put(index, re, im);
+    }
+
+    @Override
+    public void fill(double re, double im) {
+        if (re * re + im * im < ZERO_TOLERANCE) {
+            allocateTable(MIN_CAPACITY);
+            return;
+        }
+        allocateTable(capacityFor(checkedSupport(dimension)));
+        for (long i = 0; i < dimension; i++) {
+            put(i, re, im);
+        }
+    }
+
+    @Override
+    public double norm() {
+        double sum = 0.0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                double re = values[slot << 1];
+                double im = values[(slot << 1) + 1];
+                sum += re * re + im * im;
+            }
+        }
+        return Math.sqrt(sum);
+    }
+
+    @Override
+    public void applyControlled(long controlMask, int target, double[] matrix) {
+        checkControls(controlMask, target);
+        checkMatrix(matrix, 2);
+        transform(controlMask, new long[] {0L, 1L << target}, matrix);
+    }
+
+    @Override
+    public void applyControlledNot(long controlMask, int target) {
+        checkControls(controlMask, target);
+        long bit = 1L << target;
+        remap(key -> (key & controlMask) == controlMask ? key ^ bit : key);
+    }
+
+    @Override
+    public void applyMatrix(int[] qubits, double[] matrix) {
+        checkQubits(qubits);
+        checkMatrix(matrix, 1 << qubits.length);
+        long[] offsets = new long[1 << qubits.length];
+        for (int j = 0; j < offsets.length; j++) {
+            for (int bit = 0; bit < qubits.length; bit++) {
+                if ((j & (1 << bit)) != 0) {
+                    offsets[j] |= 1L << qubits[bit];
+                }
+            }
+        }
+        transform(0L, offsets, matrix);
+    }
+
+    /**
+     * Moves the amplitude of |i> to |p(i)> by rekeying the table; O(support).
+     */
+    public void applyPermutation(PermutationGate gate) {
+        for (long key : keys) {
+            if (key != EMPTY) {
+                long target = gate.permute(key);
+                if (target < 0 || target >= dimension) {
+                    throw new IllegalArgumentException("Gate is not a permutation of " + dimension + " basis states.");
+                }
+            }
+        }
+        remap(gate::permute);
+    }
+
+    /**
+     * The transform mixes the low registerQubits bits only, so each distinct value of the high
+     * bits is transformed on its own 2^m dense block and written back.
+     */
+    @Override
+    public void applyQft(int registerQubits, boolean inverse) {
+        checkRegister(registerQubits);
+        if (registerQubits > HeapStateVector.MAX_QUBITS) {
+            throw new UnsupportedOperationException("Sparse QFT registers hold at most " + HeapStateVector.MAX_QUBITS + " qubits.");
+        }
+        long[] highs = support();
+        for (int i = 0; i < highs.length; i++) {
+            highs[i] >>>= registerQubits;
+        }
+        Arrays.sort(highs);
+        int block = 1 << registerQubits;
+        checkedSupport((long) distinct(highs) * block);
+
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocateTable(capacityFor(size));
+        HeapStateVector scratch = new HeapStateVector(registerQubits);
+        for (int i = 0; i < highs.length; i++) {
+            if (i > 0 && highs[i] == highs[i - 1]) {
+                continue;
+            }
+            long base = highs[i] << registerQubits;
+            for (int j = 0; j < block; j++) {
+                int slot = find(oldKeys, base | j);
+                if (slot < 0) {
+                    scratch.set(j, 0.0, 0.0);
+                } else {
+                    scratch.set(j, oldValues[slot << 1], oldValues[(slot << 1) + 1]);
+                }
+            }
+            scratch.applyQft(registerQubits, inverse);
+            for (int j = 0; j < block; j++) {
+                put(base | j, scratch.getReal(j), scratch.getImaginary(j));
+            }
+        }
+    }
+
+    @Override
+    public double[] sum() {
+        double sumRe = 0.0;
+        double sumIm = 0.0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                sumRe += values[slot << 1];
+                sumIm += values[(slot << 1) + 1];
+            }
+        }
+        return new double[] {sumRe, sumIm};
+    }
+
+    /**
+     * A nonzero mean gives every basis state an amplitude, so the support grows to 2^n.
+     */
+    @Override
+    public void reflectAbout(double meanRe, double meanIm) {
+        if (meanRe == 0.0 && meanIm == 0.0) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    values[slot << 1] = -values[slot << 1];
+                    values[(slot << 1) + 1] = -values[(slot << 1) + 1];
+                }
+            }
+            return;
+        }
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocateTable(capacityFor(checkedSupport(dimension)));
+        for (long i = 0; i < dimension; i++) {
+            int slot = find(oldKeys, i);
+            double re = slot < 0 ? 0.0 : oldValues[slot << 1];
+            double im = slot < 0 ? 0.0 : oldValues[(slot << 1) + 1];
+            put(i, 2 * meanRe - re, 2 * meanIm - im);
+        }
+    }
+
+    /**
+     * Applies a 2^k x 2^k matrix to the groups of basis states that differ only in the offset
+     * bits, on the states where every bit of controlMask is set. A group is processed once, when
+     * the scan reaches its smallest present member; absent members are zero.
+     */
+    private void transform(long controlMask, long[] offsets, double[] matrix) {
+        int groupSize = offsets.length;
+        long groupMask = offsets[groupSize - 1];
+        double[] re = new double[groupSize];
+        double[] im = new double[groupSize];
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocateTable(capacityFor(size));
+        for (int s = 0; s < oldKeys.length; s++) {
+            long key = oldKeys[s];
+            if (key == EMPTY) {
+                continue;
+            }
+            if ((key & controlMask) != controlMask) {
+                put(key, oldValues[s << 1], oldValues[(s << 1) + 1]);
+                continue;
+            }
+            long base = key & ~groupMask;
+            boolean first = true;
+            for (int j = 0; j < groupSize && first; j++) {
+                long member = base | offsets[j];
+                int slot = member == key ? s : find(oldKeys, member);
+                if (slot < 0) {
+                    re[j] = 0.0;
+                    im[j] = 0.0;
+                } else if (member < key) {
+                    first = false;
+                } else {
+                    re[j] = oldValues[slot << 1];
+                    im[j] = oldValues[(slot << 1) + 1];
+                }
+            }
+            if (!first) {
+                continue;
+            }
+            for (int r = 0; r < groupSize; r++) {
+                double sumRe = 0.0;
+                double sumIm = 0.0;
+                for (int c = 0; c < groupSize; c++) {
+                    int m = (r * groupSize + c) << 1;
+                    sumRe += matrix[m] * re[c] - matrix[m + 1] * im[c];
+                    sumIm += matrix[m] * im[c] + matrix[m + 1] * re[c];
+                }
+                put(base | offsets[r], sumRe, sumIm);
+            }
+        }
+    }
+
+    /**
+     * Rekeys every amplitude through a bijection of the basis states.
+     */
+    private void remap(LongUnaryOperator map) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocateTable(oldKeys.length);
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldKeys[s] != EMPTY) {
+                put(map.applyAsLong(oldKeys[s]), oldValues[s << 1], oldValues[(s << 1) + 1]);
+            }
+        }
+    }
+
+    private void put(long key, double re, double im) {
+        if (re * re + im * im < ZERO_TOLERANCE) {
+            remove(key);
+            return;
+        }
+        int slot = probe(keys, key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+                slot = probe(keys, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot << 1] = re;
+        values[(slot << 1) + 1] = im;
+    }
+
+    /**
+     * Backward-shift deletion: later entries of the probe run move into the hole when their
+     * home slot does not lie between the hole and their current slot, so no tombstones remain.
+     */
+    private void remove(long key) {
+        int hole = find(keys, key);
+        if (hole < 0) {
+            return;
+        }
+        int mask = keys.length - 1;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole << 1] = values[next << 1];
+                values[(hole << 1) + 1] = values[(next << 1) + 1];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole << 1] = 0.0;
+        values[(hole << 1) + 1] = 0.0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Sparse state vector holds at most " + MAX_CAPACITY / 2 + " amplitudes.");
+        }
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocateTable(capacity);
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldKeys[s] != EMPTY) {
+                int slot = probe(keys, oldKeys[s]);
+                keys[slot] = oldKeys[s];
+                values[slot << 1] = oldValues[s << 1];
+                values[(slot << 1) + 1] = oldValues[(s << 1) + 1];
+                size++;
+            }
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new double[capacity << 1];
+        size = 0;
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity < 2L * entries) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int checkedSupport(long entries) {
+        if (entries > MAX_CAPACITY / 2) {
+            throw new IllegalStateException("Sparse state vector holds at most " + MAX_CAPACITY / 2 + " amplitudes.");
+        }
+        return (int) entries;
+    }
+
+    private static int distinct(long[] sorted) {
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int find(long[] keys, long key) {
+        int slot = probe(keys, key);
+        return keys[slot] == EMPTY ? -1 : slot;
+    }
+
+    /**
+     * The slot holding key, or the empty slot where it would be inserted.
+     */
+    private static int probe(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key, mask);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key, int mask) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Stabilizer tableau (Aaronson-Gottesman) for circuits made of Clifford gates.
+ *
+ * Rows 0..n-1 are destabilizers, rows n..2n-1 stabilizers and row 2n is scratch space for
+ * deterministic measurements. Bits are packed by qubit column: x[q * words + w] holds the X
+ * bit of qubit q for rows 64w..64w+63, so a gate updates every row of its qubits with a few
+ * word operations. Measurement multiplies many rows by the same pivot row at once, keeping
+ * the i^k phases of all target rows in two bit-sliced counters.
+ */
+public class StabilizerTableau {
+    private final int numberOfQubits;
+    private final int rows;
+    private final int words;
+    private final long[] x;
+    private final long[] z;
+    private final long[] r;
+
+    public StabilizerTableau(int numberOfQubits) {
+        if (numberOfQubits <= 0) {
+            throw new IllegalArgumentException("Number of qubits must be positive.");
+        }
+        this.numberOfQubits = numberOfQubits;
+        this.rows = 2 * numberOfQubits + 1;
+        this.words = (rows + 63) >>> 6;
+        this.x = new long[numberOfQubits * words];
+        this.z = new long[numberOfQubits * words];
+        this.r = new long[words];
+        for (int q = 0; q < numberOfQubits; q++) {
+            setBit(x, q, q, true);
+            setBit(z, q, numberOfQubits + q, true);
+        }
+    }
+
+    private StabilizerTableau(StabilizerTableau other) {
+        this.numberOfQubits = other.numberOfQubits;
+        this.rows = other.rows;
+        this.words = other.words;
+        this.x = other.x.clone();
+        this.z = other.z.clone();
+        this.r = other.r.clone();
+    }
+
+    public StabilizerTableau copy() {
+        return new StabilizerTableau(this);
+    }
+
+    public int getNumberOfQubits() {
+        return numberOfQubits;
+    }
+
+    /**
+     * Whether the gate maps Pauli operators to Pauli operators and has a tableau update here.
+     */
+    public static boolean supports(QuantumGate gate) {
+        return gate instanceof HadamardGate || gate instanceof CNOTGate || gate instanceof PauliXGate
+                || gate instanceof PauliYGate || gate instanceof PauliZGate;
+    }
+
+    public static boolean supportsAll(List<QuantumGate> gates) {
+        for (QuantumGate gate : gates) {
+            if (!supports(gate)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void apply(QuantumGate gate) {
+        if (gate instanceof HadamardGate) {
+            hadamard(((HadamardGate) gate).getTargetQubit());
+        } else if (gate instanceof CNOTGate) {
+            CNOTGate cnot = (CNOTGate) gate;
+            cnot(cnot.getControlQubit(), cnot.getTargetQubit());
+        } else if (gate instanceof PauliXGate) {
+            pauliX(((PauliXGate) gate).getTargetQubit());
+        } else if (gate instanceof PauliYGate) {
+            pauliY(((PauliYGate) gate).getTargetQubit());
+        } else if (gate instanceof PauliZGate) {
+            pauliZ(((PauliZGate) gate).getTargetQubit());
+        } else {
+            throw new IllegalArgumentException(gate.getName() + " is not a Clifford gate.");
+        }
+    }
+
+    public void hadamard(int qubit) {
+        int base = column(qubit);
+        for (int w = 0; w < words; w++) {
+            long xw = x[base + w];
+            long zw = z[base + w];
+            r[w] ^= xw & zw;
+            x[base + w] = zw;
+            z[base + w] = xw;
+        }
+    }
+
+    /**
+     * The phase gate S = diag(1, i), which with H and CNOT generates the Clifford group.
+     */
+    public void phase(int qubit) {
+        int base = column(qubit);
+        for (int w = 0; w < words; w++) {
+            r[w] ^= x[base + w] & z[base + w];
+            z[base + w] ^= x[base + w];
+        }
+    }
+
+    public void cnot(int control, int target) {
+        int c = column(control);
+        int t = column(target);
+        if (c == t) {
+            throw new IllegalArgumentException("Control and target must differ.");
+        }
+        for (int w = 0; w < words; w++) {
+            r[w] ^= x[c + w] & z[t + w] & ~(x[t + w] ^ z[c + w]);
+            x[t + w] ^= x[c + w];
+            z[c + w] ^= z[t + w];
+        }
+    }
+
+    public void pauliX(int qubit) {
+        int base = column(qubit);
+        for (int w = 0; w < words; w++) {
+            r[w] ^= z[base + w];
+        }
+    }
+
+    public void pauliY(int qubit) {
+        int base = column(qubit);
+        for (int w = 0; w < words; w++) {
+            r[w] ^= x[base + w] ^ z[base + w];
+        }
+    }
+
+    public void pauliZ(int qubit) {
+        int base = column(qubit);
+        for (int w = 0; w < words; w++) {
+            r[w] ^= x[base + w];
+        }
+    }
+
+    /**
+     * Measures one qubit in the computational basis and collapses the state. The random
+     * generator is only consulted when the outcome is not determined.
+     */
+    public int measure(int qubit, SplittableRandom random) {
+        int base = column(qubit);
+        int pivot = -1;
+        for (int row = numberOfQubits; row < 2 * numberOfQubits; row++) {
+            if (bit(x, base, row)) {
+                pivot = row;
+                break;
+            }
+        }
+        if (pivot >= 0) {
+            // Random outcome: every other row anticommuting with Z_qubit absorbs the pivot
+            long[] mask = new long[words];
+            for (int w = 0; w < words; w++) {
+                mask[w] = x[base + w];
+            }
+            mask[(2 * numberOfQubits) >>> 6] &= ~(1L << (2 * numberOfQubits));
+            mask[pivot >>> 6] &= ~(1L << pivot);
+            rowsum(mask, 0, words, pivot);
+            copyRow(pivot, pivot - numberOfQubits);
+            clearRow(pivot);
+            setBit(z, qubit, pivot, true);
+            int outcome = random.nextBoolean() ? 1 : 0;
+            setPhase(pivot, outcome == 1);
+            return outcome;
+        }
+        int scratch = 2 * numberOfQubits;
+        clearRow(scratch);
+        long[] mask = new long[words];
+        mask[scratch >>> 6] = 1L << scratch;
+        for (int row = 0; row < numberOfQubits; row++) {
+            if (bit(x, base, row)) {
+                rowsum(mask, scratch >>> 6, (scratch >>> 6) + 1, row + numberOfQubits);
+            }
+        }
+        return (int) ((r[scratch >>> 6] >>> scratch) & 1);
+    }
+
+    /**
+     * Measures every qubit, qubit q giving bit q of the result.
+     */
+    public BitSet measureAll(SplittableRandom random) {
+        BitSet outcome = new BitSet(numberOfQubits);
+        for (int q = 0; q < numberOfQubits; q++) {
+            if (measure(q, random) == 1) {
+                outcome.set(q);
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Draws shots from the current state without disturbing it; each shot measures a copy.
+     */
+    public SampleHistogram sample(int shots, long seed) {
+        if (shots <= 0) {
+            throw new IllegalArgumentException("Number of shots must be positive.");
+        }
+        if (numberOfQubits >= Long.SIZE) {
+            throw new UnsupportedOperationException("Outcomes of more than 63 qubits do not fit a histogram; use measureAll.");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] outcomes = new long[shots];
+        for (int shot = 0; shot < shots; shot++) {
+            BitSet bits = copy().measureAll(random);
+            outcomes[shot] = bits.isEmpty() ? 0L : bits.toLongArray()[0];
+        }
+        return SampleHistogram.fromOutcomes(outcomes, false);
+    }
+
+    /**
+     * Multiplies every row in mask (restricted to words [fromWord, toWord)) by the source row.
+     * Per qubit, the i^k factor of multiplying the source's Pauli into a target's is +1, -1
+     * or 0 depending only on the target's bits, so the sums of all target rows run in
+     * parallel as 2-bit counters (lo, hi) mod 4.
+     */
+    private void rowsum(long[] mask, int fromWord, int toWord, int source) {
+        long[] lo = new long[words];
+        long[] hi = new long[words];
+        for (int q = 0; q < numberOfQubits; q++) {
+            int base = q * words;
+            boolean x1 = bit(x, base, source);
+            boolean z1 = bit(z, base, source);
+            if (!x1 && !z1) {
+                continue;
+            }
+            for (int w = fromWord; w < toWord; w++) {
+                long x2 = x[base + w];
+                long z2 = z[base + w];
+                long plus;
+                long minus;
+                if (x1 && z1) {
+                    plus = z2 & ~x2;
+                    minus = x2 & ~z2;
+                } else if (x1) {
+                    plus = z2 & x2;
+                    minus = z2 & ~x2;
+                } else {
+                    plus = x2 & ~z2;
+                    minus = x2 & z2;
+                }
+                plus &= mask[w];
+                minus &= mask[w];
+                hi[w] ^= lo[w] & plus;
+                lo[w] ^= plus;
+                hi[w] ^= ~lo[w] & minus;
+                lo[w] ^= minus;
+            }
+        }
+        long sourcePhase = bit(r, 0, source) ? -1L : 0L;
+        for (int w = fromWord; w < toWord; w++) {
+            // 2 r_h + 2 r_source + sum is 0 or 2 mod 4; the new phase bit is its upper bit
+            r[w] = (r[w] & ~mask[w]) | ((hi[w] ^ r[w] ^ sourcePhase) & mask[w]);
+        }
+        for (int q = 0; q < numberOfQubits; q++) {
+            int base = q * words;
+            boolean x1 = bit(x, base, source);
+            boolean z1 = bit(z, base, source);
+            for (int w = fromWord; w < toWord; w++) {
+                if (x1) {
+                    x[base + w] ^= mask[w];
+                }
+                if (z1) {
+                    z[base + w] ^= mask[w];
+                }
+            }
+        }
+    }
+
+    private void copyRow(int from, int to) {
+        for (int q = 0; q < numberOfQubits; q++) {
+            setBit(x, q, to, bit(x, q * words, from));
+            setBit(z, q, to, bit(z, q * words, from));
+        }
+        setPhase(to, bit(r, 0, from));
+    }
+
+    private void clearRow(int row) {
+        for (int q = 0; q < numberOfQubits; q++) {
+            setBit(x, q, row, false);
+            setBit(z, q, row, false);
+        }
+        setPhase(row, false);
+    }
+
+    private void setPhase(int row, boolean value) {
+        if (value) {
+            r[row >>> 6] |= 1L << row;
+        } else {
+            r[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    private void setBit(long[] bits, int qubit, int row, boolean value) {
+        int index = qubit * words + (row >>> 6);
+        if (value) {
+            bits[index] |= 1L << row;
+        } else {
+            bits[index] &= ~(1L << row);
+        }
+    }
+
+    private static boolean bit(long[] bits, int base, int row) {
+        return ((bits[base + (row >>> 6)] >>> row) & 1) != 0;
+    }
+
+    private int column(int qubit) {
+        if (qubit < 0 || qubit >= numberOfQubits) {
+            throw new IllegalArgumentException("Qubit index out of range: " + qubit);
+        }
+        return qubit * words;
+    }
+}
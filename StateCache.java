@@ -0,0 +1,267 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of intermediate states of circuits started from |0...0>.
+ *
+ * The key of a gate prefix is SHA-256(key of the previous prefix, canonical form of the
+ * gate), seeded with the register size, so two circuits that share a prefix share its key
+ * no matter which objects built them. Entries are evicted least-recently-used once their
+ * amplitudes exceed maxBytes; with a spill directory, evicted states are written there and
+ * read back on a later hit until the directory in turn exceeds maxSpillBytes. A state that
+ * cannot be written to the spill directory is dropped like any other eviction.
+ */
+public class StateCache {
+    // Spill files are written and read through a buffer of this many bytes
+    private static final int SPILL_CHUNK = 1 << 20;
+
+    private final long maxBytes;
+    private final Path spillDirectory;
+    private final long maxSpillBytes;
+    private final int checkpointInterval;
+    private final LinkedHashMap<String, double[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> spilled = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long spillBytes;
+    private long hits;
+    private long misses;
+
+    public StateCache(long maxBytes) {
+        this(maxBytes, Integer.MAX_VALUE, null, 0);
+    }
+
+    /**
+     * @param checkpointInterval a state is stored after every checkpointInterval gates in
+     *                           addition to the final state of each run
+     * @param spillDirectory     where evicted states go, or null to drop them
+     */
+    public StateCache(long maxBytes, int checkpointInterval, Path spillDirectory, long maxSpillBytes) {
+        if (maxBytes <= 0 || checkpointInterval <= 0 || maxSpillBytes < 0) {
+            throw new IllegalArgumentException("Cache limits must be positive.");
+        }
+        if (spillDirectory != null) {
+            try {
+                Files.createDirectories(spillDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create spill directory " + spillDirectory, e);
+            }
+        }
+        this.maxBytes = maxBytes;
+        this.checkpointInterval = checkpointInterval;
+        this.spillDirectory = spillDirectory;
+        this.maxSpillBytes = maxSpillBytes;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Keys of the prefixes of the gate list: element i identifies the state after the first
+     * i gates. The list stops at the first gate without a canonical form, since nothing
+     * after it can be identified.
+     */
+    public static String[] prefixKeys(int numberOfQubits, List<QuantumGate> gates) {
+        String[] keys = new String[gates.size() + 1];
+        keys[0] = hash("qubits:" + numberOfQubits);
+        int count = 1;
+        for (QuantumGate gate : gates) {
+            String form = gate.getCanonicalForm();
+            if (form == null) {
+                break;
+            }
+            keys[count] = hash(keys[count - 1] + '\n' + form);
+            count++;
+        }
+        String[] result = new String[count];
+        System.arraycopy(keys, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Loads the longest cached prefix into target and returns its length in gates, or 0 when
+     * no prefix is cached and target was left untouched.
+     */
+    public synchronized int loadLongestPrefix(String[] prefixKeys, StateVector target) {
+        for (int length = prefixKeys.length - 1; length > 0; length--) {
+            if (load(prefixKeys[length], target)) {
+                hits++;
+                return length;
+            }
+        }
+        misses++;
+        return 0;
+    }
+
+    /**
+     * Stores a copy of the state under key. States larger than the cache itself are ignored.
+     */
+    public synchronized void store(String key, StateVector state) {
+        long size = state.getDimension() * 2 * Double.BYTES;
+        if (size > maxBytes || entries.containsKey(key)) {
+            return;
+        }
+        double[] amplitudes = new double[(int) (state.getDimension() << 1)];
+        for (int i = 0; i < amplitudes.length; i += 2) {
+            amplitudes[i] = state.getReal(i >> 1);
+            amplitudes[i + 1] = state.getImaginary(i >> 1);
+        }
+        insert(key, amplitudes);
+    }
+
+    private boolean load(String key, StateVector target) {
+        double[] amplitudes = entries.get(key);
+        if (amplitudes == null && spilled.containsKey(key)) {
+            amplitudes = readSpilled(key);
+            if (amplitudes != null) {
+                insert(key, amplitudes);
+            }
+        }
+        if (amplitudes == null || amplitudes.length != target.getDimension() << 1) {
+            return false;
+        }
+        for (int i = 0; i < amplitudes.length; i += 2) {
+            target.set(i >> 1, amplitudes[i], amplitudes[i + 1]);
+        }
+        return true;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        for (String key : spilled.keySet()) {
+            deleteSpilled(key);
+        }
+        spilled.clear();
+        spillBytes = 0;
+    }
+
+    private void insert(String key, double[] amplitudes) {
+        entries.put(key, amplitudes);
+        bytes += (long) amplitudes.length * Double.BYTES;
+        Iterator<Map.Entry<String, double[]>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, double[]> entry = eldest.next();
+            eldest.remove();
+            bytes -= (long) entry.getValue().length * Double.BYTES;
+            spill(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void spill(String key, double[] amplitudes) {
+        long size = (long) amplitudes.length * Double.BYTES;
+        if (spillDirectory == null || size > maxSpillBytes || spilled.containsKey(key)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SPILL_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        try (FileChannel channel = FileChannel.open(spillFile(key), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int offset = 0; offset < amplitudes.length; offset += doubles.capacity()) {
+                int count = Math.min(doubles.capacity(), amplitudes.length - offset);
+                doubles.clear();
+                doubles.put(amplitudes, offset, count);
+                buffer.clear().limit(count * Double.BYTES);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            // Eviction must not fail the run that triggered it; the state is just dropped
+            deleteSpilled(key);
+            return;
+        }
+        spilled.put(key, size);
+        spillBytes += size;
+        Iterator<Map.Entry<String, Long>> eldest = spilled.entrySet().iterator();
+        while (spillBytes > maxSpillBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            spillBytes -= entry.getValue();
+            deleteSpilled(entry.getKey());
+        }
+    }
+
+    private double[] readSpilled(String key) {
+        long size = spilled.remove(key);
+        spillBytes -= size;
+        double[] amplitudes = new double[(int) (size / Double.BYTES)];
+        ByteBuffer buffer = ByteBuffer.allocate(SPILL_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        try (FileChannel channel = FileChannel.open(spillFile(key), StandardOpenOption.READ)) {
+            for (int offset = 0; offset < amplitudes.length; offset += doubles.capacity()) {
+                int count = Math.min(doubles.capacity(), amplitudes.length - offset);
+                buffer.clear().limit(count * Double.BYTES);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        return null;
+                    }
+                }
+                doubles.clear();
+                doubles.get(amplitudes, offset, count);
+            }
+        } catch (IOException e) {
+            return null;
+        } finally {
+            deleteSpilled(key);
+        }
+        return amplitudes;
+    }
+
+    private void deleteSpilled(String key) {
+        try {
+            Files.deleteIfExists(spillFile(key));
+        } catch (IOException e) {
+            // A stale spill file only costs disk space
+        }
+    }
+
+    private Path spillFile(String key) {
+        return spillDirectory.resolve(key + ".state");
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+}
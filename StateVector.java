@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+/**
+ * Complex state vector of an n-qubit register.
+ *
+ * Amplitudes are stored interleaved (re, im, re, im, ...). Qubit q corresponds to bit
+ * (1 << q) of the basis-state index. Implementations decide where the amplitudes live:
+ * {@link HeapStateVector} in a double[], {@link DirectStateVector} in direct buffers and
+ * {@link MappedStateVector} in a memory-mapped file.
+ */
+public abstract class StateVector {
+    public static final int MAX_MATRIX_QUBITS = 6;
+
+    protected final int numberOfQubits;
+    protected final long dimension;
+    protected ParallelExecution parallelExecution;
+
+    protected StateVector(int numberOfQubits) {
+        if (numberOfQubits <= 0 || numberOfQubits > 62) {
+            throw new IllegalArgumentException("Number of qubits must be between 1 and 62.");
+        }
+        this.numberOfQubits = numberOfQubits;
+        this.dimension = 1L << numberOfQubits;
+    }
+
+    /**
+     * Allocates |0...0>, on the heap when the register fits in a double[] and in direct
+     * buffers otherwise.
+     */
+    public static StateVector allocate(int numberOfQubits) {
+        if (numberOfQubits <= HeapStateVector.MAX_QUBITS) {
+            return new HeapStateVector(numberOfQubits);
+        }
+        return new DirectStateVector(numberOfQubits);
+    }
+
+    public static StateVector fromReal(double[] real) {
+        if (real == null || real.length < 2 || Integer.bitCount(real.length) != 1) {
+            throw new IllegalArgumentException("State vector length must be a power of two.");
+        }
+        StateVector state = new HeapStateVector(Integer.numberOfTrailingZeros(real.length));
+        state.setReal(real);
+        return state;
+    }
+
+    public static StateVector uniform(int numberOfQubits) {
+        StateVector state = allocate(numberOfQubits);
+        state.fill(1.0 / Math.sqrt(state.dimension), 0.0);
+        return state;
+    }
+
+    public int getNumberOfQubits() {
+        return numberOfQubits;
+    }
+
+    public long getDimension() {
+        return dimension;
+    }
+
+    public ParallelExecution getParallelExecution() {
+        return parallelExecution;
+    }
+
+    /**
+     * Runs subsequent kernels on the given pool, or single-threaded when null.
+     */
+    public void setParallelExecution(ParallelExecution parallelExecution) {
+        this.parallelExecution = parallelExecution;
+    }
+
+    public abstract double getReal(long index);
+
+    public abstract double getImaginary(long index);
+
+    public abstract void set(long index, double re, double im);
+
+    public double getProbability(long index) {
+        double re = getReal(index);
+        double im = getImaginary(index);
+        return re * re + im * im;
+    }
+
+    /**
+     * Sets every amplitude to re + i*im.
+     */
+    public abstract void fill(double re, double im);
+
+    public abstract double norm();
+
+    public double[] copyReal() {
+        int length = checkedDimension();
+        double[] real = new double[length];
+        for (int i = 0; i < length; i++) {
+            real[i] = getReal(i);
+        }
+        return real;
+    }
+
+    public double[] copyImaginary() {
+        int length = checkedDimension();
+        double[] imaginary = new double[length];
+        for (int i = 0; i < length; i++) {
+            imaginary[i] = getImaginary(i);
+        }
+        return imaginary;
+    }
+
+    public void setReal(double[] real) {
+        checkLength(real);
+        for (int i = 0; i < real.length; i++) {
+            set(i, real[i], getImaginary(i));
+        }
+    }
+
+    public void setImaginary(double[] imaginary) {
+        checkLength(imaginary);
+        for (int i = 0; i < imaginary.length; i++) {
+            set(i, getReal(i), imaginary[i]);
+        }
+    }
+
+    /**
+     * Applies a 2x2 unitary to the target qubit. The matrix is row-major with interleaved
+     * complex entries: {u00re, u00im, u01re, u01im, u10re, u10im, u11re, u11im}.
+     */
+    public void applySingleQubit(int target, double[] matrix) {
+        applyControlled(0L, target, matrix);
+    }
+
+    /**
+     * Applies a 2x2 unitary to the target qubit on the basis states where every bit of
+     * controlMask is set. Each amplitude pair (i, i + 2^target) is visited exactly once.
+     */
+    public abstract void applyControlled(long controlMask, int target, double[] matrix);
+
+    /**
+     * Flips the target qubit on the basis states where every bit of controlMask is set (X,
+     * CNOT, Toffoli). Implementations swap amplitude pairs instead of multiplying by X.
+     */
+    public void applyControlledNot(long controlMask, int target) {
+        applyControlled(controlMask, target, PauliXGate.MATRIX);
+    }
+
+    /**
+     * Moves the amplitude of |i> to |p(i)> by rotating each cycle of the table in place.
+     */
+    void applyPermutation(PermutationTable table) {
+        if (table.getSize() > dimension) {
+            throw new IllegalArgumentException("Permutation does not fit the register.");
+        }
+        forEachRange(table.getCycleCount(), (chunk, from, to) -> table.apply(this, from, to));
+    }
+
+    /**
+     * Applies a 4x4 unitary to the qubit pair (qubit0, qubit1). Within the matrix, qubit0 is
+     * the least significant bit of the local basis index.
+     */
+    public void applyTwoQubit(int qubit0, int qubit1, double[] matrix) {
+        applyMatrix(new int[] {qubit0, qubit1}, matrix);
+    }
+
+    /**
+     * Applies a dense 2^k x 2^k unitary to the given qubits. qubits[0] is the least
+     * significant bit of the matrix's local basis index.
+     */
+    public abstract void applyMatrix(int[] qubits, double[] matrix);
+
+    /**
+     * Quantum Fourier transform of the register formed by qubits 0..registerQubits-1,
+     * |x> -> 2^(-m/2) * sum_y exp(+-2*pi*i*x*y / 2^m) |y>. The inverse uses the negative sign.
+     */
+    public abstract void applyQft(int registerQubits, boolean inverse);
+
+    /**
+     * Returns the sum of all amplitudes as {re, im}. In parallel mode partial sums are
+     * combined in chunk order, so the result does not depend on thread scheduling.
+     */
+    public abstract double[] sum();
+
+    /**
+     * Replaces every amplitude a with 2 * mean - a.
+     */
+    public abstract void reflectAbout(double meanRe, double meanIm);
+
+    protected void checkQubit(int qubit) {
+        if (qubit < 0 || qubit >= numberOfQubits) {
+            throw new IllegalArgumentException("Qubit index out of range: " + qubit);
+        }
+    }
+
+    protected void checkControls(long controlMask, int target) {
+        checkQubit(target);
+        if ((controlMask & (1L << target)) != 0 || (controlMask >>> numberOfQubits) != 0) {
+            throw new IllegalArgumentException("Invalid control mask.");
+        }
+    }
+
+    protected void checkQubits(int[] qubits) {
+        if (qubits.length == 0 || qubits.length > MAX_MATRIX_QUBITS) {
+            throw new IllegalArgumentException("Matrix gates must act on 1 to " + MAX_MATRIX_QUBITS + " qubits.");
+        }
+        long mask = 0;
+        for (int qubit : qubits) {
+            checkQubit(qubit);
+            mask |= 1L << qubit;
+        }
+        if (Long.bitCount(mask) != qubits.length) {
+            throw new IllegalArgumentException("Qubits must be distinct.");
+        }
+    }
+
+    protected void checkRegister(int registerQubits) {
+        if (registerQubits <= 0 || registerQubits > numberOfQubits) {
+            throw new IllegalArgumentException("QFT register must have between 1 and " + numberOfQubits + " qubits.");
+        }
+    }
+
+    protected static void checkMatrix(double[] matrix, int size) {
+        if (matrix == null || matrix.length != size * size * 2) {
+            throw new IllegalArgumentException("Matrix must hold " + size + "x" + size + " complex entries.");
+        }
+    }
+
+    protected void forEachRange(int count, ParallelExecution.ChunkTask task) {
+        if (parallelExecution == null) {
+            task.run(0, 0, count);
+        } else {
+            parallelExecution.forEachChunk(count, task);
+        }
+    }
+
+    private int checkedDimension() {
+        if (dimension > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("State vector is too large to copy into an array.");
+        }
+        return (int) dimension;
+    }
+
+    private void checkLength(double[] values) {
+        if (values == null || values.length != dimension) {
+            throw new IllegalArgumentException("Invalid state vector.");
+        }
+    }
+
+    static int insertZeroBit(int value, int position) {
+        int lowMask = (1 << position) - 1;
+        return ((value & ~lowMask) << 1) | (value & lowMask);
+    }
+
+    static long insertZeroBit(long value, int position) {
+        long lowMask = (1L << position) - 1;
+        return ((value & ~lowMask) << 1) | (value & lowMask);
+    }
+}
@@ -0,0 +1,60 @@
+// Copyright (c) Devin Benard Royal - All Rights Reserved.
+// Copyright (c) Devin Benard Royal - 2024
+import java.util.function.IntPredicate;
+
+/**
+ * Row store underneath {@link DatabaseReplicator}: int keys to opaque byte[] values.
+ * Implementations must be safe for concurrent use; values are copied in and out.
+ */
+interface StorageEngine {
+
+    /**
+     * Returns a copy of the value stored under key, or null.
+     */
+    byte[] get(int key);
+
+    /**
+     * Stores a copy of value under key and returns true when the key was not present.
+     */
+    boolean put(int key, byte[] value);
+
+    /**
+     * Returns true when a value was removed.
+     */
+    boolean remove(int key);
+
+    boolean containsKey(int key);
+
+    long size();
+
+    /**
+     * Visits every row once. Rows written concurrently may or may not be seen. The visitor may
+     * call back into the engine.
+     */
+    void forEach(RowVisitor visitor);
+
+    /**
+     * Every row has a fixed scan position in [0, scanEnd()) that does not change while it lives.
+     */
+    long scanEnd();
+
+    /**
+     * The scan position key has while it is stored, whether or not it is stored now.
+     */
+    long positionOf(int key);
+
+    /**
+     * Visits, in position order, up to limit rows positioned in [position, end) whose key is
+     * accepted, and returns the position to resume from; end once the range is exhausted. Rows
+     * present for the whole scan are visited exactly once across resumed calls.
+     */
+    long scan(long position, long end, IntPredicate keys, int limit, ScanVisitor visitor);
+
+    interface RowVisitor {
+        void visit(int key, byte[] value);
+    }
+
+    interface ScanVisitor {
+        void visit(long position, int key, byte[] value);
+    }
+}
@@ -0,0 +1,401 @@
+// Copyright (c) Devin Benard Royal - All Rights Reserved.
+// Copyright (c) Devin Benard Royal - 2024
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Default {@link StorageEngine}: the key space is hashed onto independent stripes, each an
+ * open-addressing int table with linear probing guarded by its own StampedLock.
+ *
+ * A stripe keeps keys in an int[] and, in a parallel long[], a pointer (offset << 32 | length)
+ * into an append-only direct ByteBuffer holding the values, so a row costs 12 bytes of heap
+ * plus its bytes off-heap and no objects. Updates and deletes leave dead bytes behind; when the
+ * arena runs out of room the live values are compacted into a new arena sized for them.
+ * Reads are optimistic: they copy the value without locking and retry under the read lock
+ * only if a writer got in between.
+ *
+ * Scans order rows by stripe, then by the bit-reversed hash of the key. The top bits of that
+ * order are the reversed home slot, so a stripe is walked home slot by home slot in a sequence
+ * that stays valid when the table doubles, and a resume position survives resizes and deletes.
+ */
+class StripedStorageEngine implements StorageEngine {
+    static final int DEFAULT_STRIPES = 64;
+    static final int SCAN_BATCH = 1024;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_ARENA_BYTES = 1 << 12;
+    private static final long EMPTY = -1L;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    StripedStorageEngine() {
+        this(DEFAULT_STRIPES);
+    }
+
+    StripedStorageEngine(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of stripes must be a power of two.");
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeShift = Integer.SIZE - Integer.numberOfTrailingZeros(stripes);
+    }
+
+    @Override
+    public byte[] get(int key) {
+        int hash = hash(key);
+        return stripe(hash).get(key, hash);
+    }
+
+    @Override
+    public boolean put(int key, byte[] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null.");
+        }
+        int hash = hash(key);
+        return stripe(hash).put(key, hash, value);
+    }
+
+    @Override
+    public boolean remove(int key) {
+        int hash = hash(key);
+        return stripe(hash).remove(key, hash);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        int hash = hash(key);
+        return stripe(hash).contains(key, hash);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public void forEach(RowVisitor visitor) {
+        // Page through so at most one batch of values is held at a time
+        long end = scanEnd();
+        for (long position = 0; position < end; ) {
+            position = scan(position, end, key -> true, SCAN_BATCH, (at, key, value) -> visitor.visit(key, value));
+        }
+    }
+
+    @Override
+    public long scanEnd() {
+        return (long) stripes.length << 32;
+    }
+
+    @Override
+    public long positionOf(int key) {
+        int hash = hash(key);
+        long index = stripes.length == 1 ? 0 : hash >>> stripeShift;
+        return (index << 32) + order(key);
+    }
+
+    @Override
+    public long scan(long position, long end, IntPredicate keys, int limit, ScanVisitor visitor) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        if (position < 0 || end > scanEnd()) {
+            throw new IllegalArgumentException("Scan range lies outside the engine.");
+        }
+        int[] rowKeys = new int[limit];
+        byte[][] rowValues = new byte[limit][];
+        long[] rowPositions = new long[limit];
+        int count = 0;
+        while (position < end && count < limit) {
+            int index = (int) (position >>> 32);
+            long base = (long) index << 32;
+            long stripeEnd = Math.min(end, base + (1L << 32));
+            int added = stripes[index].scan(position - base, stripeEnd - base, keys, limit - count,
+                    rowKeys, rowValues, rowPositions, count);
+            for (int i = count; i < count + added; i++) {
+                rowPositions[i] += base;
+            }
+            count += added;
+            position = count < limit ? stripeEnd : rowPositions[count - 1] + 1;
+        }
+        // Visit outside the locks so the visitor may write to the engine
+        for (int i = 0; i < count; i++) {
+            visitor.visit(rowPositions[i], rowKeys[i], rowValues[i]);
+        }
+        return position;
+    }
+
+    private Stripe stripe(int hash) {
+        // High bits pick the stripe, low bits the slot, so the two stay independent
+        return stripes.length == 1 ? stripes[0] : stripes[hash >>> stripeShift];
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Position of key within its stripe. hash is a bijection, so no two keys share one.
+     */
+    private static long order(int key) {
+        return Integer.toUnsignedLong(Integer.reverse(hash(key)));
+    }
+
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private int[] keys;
+        private long[] pointers;
+        private ByteBuffer arena;
+        private int arenaEnd;
+        private long liveBytes;
+        private volatile int size;
+
+        Stripe() {
+            keys = new int[MIN_CAPACITY];
+            pointers = new long[MIN_CAPACITY];
+            Arrays.fill(pointers, EMPTY);
+            arena = ByteBuffer.allocateDirect(MIN_ARENA_BYTES);
+        }
+
+        byte[] get(int key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    byte[] value = read(keys, pointers, arena, key, hash);
+                    if (lock.validate(stamp)) {
+                        return value;
+                    }
+                } catch (RuntimeException e) {
+                    // A writer swapped the table or arena underneath us; retry under the lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return read(keys, pointers, arena, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean contains(int key, int hash) {
+            long stamp = lock.readLock();
+            try {
+                return find(key, hash) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean put(int key, int hash, byte[] value) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = probe(keys, pointers, key, hash);
+                boolean inserted = pointers[slot] == EMPTY;
+                if (inserted && (size + 1) * 2 > keys.length) {
+                    rehash(keys.length * 2);
+                    slot = probe(keys, pointers, key, hash);
+                }
+                if (!inserted) {
+                    liveBytes -= length(pointers[slot]);
+                    // Free the old bytes before allocating so compaction can reclaim them
+                    pointers[slot] = 0L;
+                }
+                int offset = allocate(value.length);
+                arena.put(offset, value);
+                keys[slot] = key;
+                pointers[slot] = ((long) offset << 32) | value.length;
+                liveBytes += value.length;
+                if (inserted) {
+                    size++;
+                }
+                return inserted;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(int key, int hash) {
+            long stamp = lock.writeLock();
+            try {
+                int hole = find(key, hash);
+                if (hole < 0) {
+                    return false;
+                }
+                liveBytes -= length(pointers[hole]);
+                // Backward-shift deletion keeps probe runs intact without tombstones
+                int mask = keys.length - 1;
+                for (int next = (hole + 1) & mask; pointers[next] != EMPTY; next = (next + 1) & mask) {
+                    int home = hash(keys[next]) & mask;
+                    if (((next - home) & mask) >= ((next - hole) & mask)) {
+                        keys[hole] = keys[next];
+                        pointers[hole] = pointers[next];
+                        hole = next;
+                    }
+                }
+                pointers[hole] = EMPTY;
+                size--;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Copies up to limit rows with order in [from, to) into the output arrays at offset and
+         * returns how many were copied; positions receive each row's order.
+         */
+        int scan(long from, long to, IntPredicate accept, int limit,
+                int[] keysOut, byte[][] valuesOut, long[] positionsOut, int offset) {
+            long stamp = lock.readLock();
+            try {
+                int mask = keys.length - 1;
+                int shift = Integer.SIZE - Integer.numberOfTrailingZeros(keys.length);
+                int[] group = new int[4];
+                long[] groupOrders = new long[4];
+                int count = 0;
+                for (long r = from >>> shift; r < keys.length && (r << shift) < to && count < limit; r++) {
+                    int home = Integer.reverse((int) r) >>> shift;
+                    // Rows homed at a slot sit in the run of occupied slots that starts there
+                    int members = 0;
+                    for (int slot = home; pointers[slot] != EMPTY; slot = (slot + 1) & mask) {
+                        int key = keys[slot];
+                        if ((hash(key) & mask) != home) {
+                            continue;
+                        }
+                        long order = order(key);
+                        if (order < from || order >= to || !accept.test(key)) {
+                            continue;
+                        }
+                        if (members == group.length) {
+                            group = Arrays.copyOf(group, members * 2);
+                            groupOrders = Arrays.copyOf(groupOrders, members * 2);
+                        }
+                        int at = members++;
+                        for (; at > 0 && groupOrders[at - 1] > order; at--) {
+                            group[at] = group[at - 1];
+                            groupOrders[at] = groupOrders[at - 1];
+                        }
+                        group[at] = slot;
+                        groupOrders[at] = order;
+                    }
+                    for (int m = 0; m < members && count < limit; m++, count++) {
+                        keysOut[offset + count] = keys[group[m]];
+                        valuesOut[offset + count] = copy(arena, pointers[group[m]]);
+                        positionsOut[offset + count] = groupOrders[m];
+                    }
+                }
+                return count;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private int find(int key, int hash) {
+            int slot = probe(keys, pointers, key, hash);
+            return pointers[slot] == EMPTY ? -1 : slot;
+        }
+
+        /**
+         * Returns the offset of a fresh region of the arena, compacting or growing it first
+         * when the tail has no room.
+         */
+        private int allocate(int length) {
+            if (arena.capacity() - arenaEnd < length) {
+                long needed = liveBytes + length;
+                if (needed > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Stripe holds at most 2 GiB of values.");
+                }
+                long capacity = Math.max(MIN_ARENA_BYTES, Math.min(Integer.MAX_VALUE, needed * 2));
+                ByteBuffer next = ByteBuffer.allocateDirect((int) capacity);
+                int end = 0;
+                for (int slot = 0; slot < keys.length; slot++) {
+                    long pointer = pointers[slot];
+                    if (pointer == EMPTY || pointer == 0L) {
+                        continue;
+                    }
+                    int rowLength = length(pointer);
+                    next.put(end, arena, offset(pointer), rowLength);
+                    pointers[slot] = ((long) end << 32) | rowLength;
+                    end += rowLength;
+                }
+                arena = next;
+                arenaEnd = end;
+            }
+            int offset = arenaEnd;
+            arenaEnd += length;
+            return offset;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            long[] oldPointers = pointers;
+            int[] newKeys = new int[capacity];
+            long[] newPointers = new long[capacity];
+            Arrays.fill(newPointers, EMPTY);
+            for (int s = 0; s < oldKeys.length; s++) {
+                if (oldPointers[s] != EMPTY) {
+                    int slot = probe(newKeys, newPointers, oldKeys[s], hash(oldKeys[s]));
+                    newKeys[slot] = oldKeys[s];
+                    newPointers[slot] = oldPointers[s];
+                }
+            }
+            keys = newKeys;
+            pointers = newPointers;
+        }
+
+        private static byte[] read(int[] keys, long[] pointers, ByteBuffer arena, int key, int hash) {
+            if (keys.length != pointers.length) {
+                throw new IllegalStateException("Table resized during read.");
+            }
+            int slot = probe(keys, pointers, key, hash);
+            long pointer = pointers[slot];
+            if (pointer == EMPTY) {
+                return null;
+            }
+            // A torn optimistic read may pair a pointer with the wrong arena; never size an array from it
+            if ((long) offset(pointer) + length(pointer) > arena.capacity() || length(pointer) < 0) {
+                throw new IllegalStateException("Arena replaced during read.");
+            }
+            return copy(arena, pointer);
+        }
+
+        /**
+         * The slot holding key, or the empty slot where it would be inserted. Bounded by the
+         * table length so an optimistic read of a table being rewritten cannot spin.
+         */
+        private static int probe(int[] keys, long[] pointers, int key, int hash) {
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            for (int step = 0; step < keys.length; step++) {
+                if (pointers[slot] == EMPTY || keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            throw new IllegalStateException("Table has no empty slot.");
+        }
+
+        private static byte[] copy(ByteBuffer arena, long pointer) {
+            byte[] value = new byte[length(pointer)];
+            arena.get(offset(pointer), value);
+            return value;
+        }
+
+        private static int offset(long pointer) {
+            return (int) (pointer >>> 32);
+        }
+
+        private static int length(long pointer) {
+            return (int) pointer;
+        }
+    }
+}
@@ -4,7 +4,7 @@
 
 package com.quantumcomputing;
 
-public class ToffoliGate extends QuantumGate {
+public class ToffoliGate extends MatrixGate implements PermutationGate {
     private int controlQubit1;
     private int controlQubit2;
     private int targetQubit;
@@ -17,14 +17,35 @@ public class ToffoliGate extends QuantumGate {
     }
 
     @Override
-    public void apply(double[] stateVector) {
-        // Implementation of Toffoli (CCNOT) gate application
-        int length = stateVector.length;
-        for (int i = 0; i < length; i++) {
-            if ((i & (1 << controlQubit1)) != 0 && (i & (1 << controlQubit2)) != 0) {
-                stateVector[i ^ (1 << targetQubit)] = stateVector[i];
-            }
-        }
+    public void apply(StateVector stateVector) {
+        long controlMask = (1L << controlQubit1) | (1L << controlQubit2);
+        stateVector.applyControlledNot(controlMask, targetQubit);
+    }
+
+    @Override
+    public long permute(long index) {
+        long controlMask = (1L << controlQubit1) | (1L << controlQubit2);
+        return (index & controlMask) == controlMask ? index ^ (1L << targetQubit) : index;
+    }
+
+    @Override
+    public int[] getQubits() {
+        return new int[] {controlQubit1, controlQubit2, targetQubit};
+    }
+
+    @Override
+    public double[] getMatrix() {
+        return MatrixGate.controlled(2, PauliXGate.MATRIX);
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return true;
+    }
+
+    @Override
+    public String getCanonicalForm() {
+        return "Toffoli(" + controlQubit1 + ", " + controlQubit2 + ", " + targetQubit + ")";
     }
 
     public int getControlQubit1() {
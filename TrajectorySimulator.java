@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Monte-Carlo simulation of a noisy circuit. Each trajectory runs the circuit once on its
+ * own state vector with noise drawn as discrete error events, and trajectories run in
+ * parallel. Every trajectory gets a SplittableRandom split from the seed in trajectory
+ * order, so results are reproducible for any pool size.
+ */
+public class TrajectorySimulator {
+    private final QuantumCircuit circuit;
+    private final ParallelExecution trajectoryExecution;
+
+    public TrajectorySimulator(QuantumCircuit circuit) {
+        this(circuit, ForkJoinPool.commonPool());
+    }
+
+    public TrajectorySimulator(QuantumCircuit circuit, ForkJoinPool pool) {
+        if (circuit == null) {
+            throw new IllegalArgumentException("Circuit cannot be null.");
+        }
+        this.circuit = circuit;
+        this.trajectoryExecution = new ParallelExecution(pool, 1);
+    }
+
+    public StateVector runTrajectory(SplittableRandom random) {
+        StateVector stateVector = StateVector.allocate(circuit.getNumberOfQubits());
+        circuit.execute(stateVector, random);
+        return stateVector;
+    }
+
+    /**
+     * Runs the given number of trajectories and draws shotsPerTrajectory measurements from
+     * each, returning the combined histogram.
+     */
+    public SampleHistogram sample(int trajectories, int shotsPerTrajectory, long seed) {
+        if (trajectories <= 0) {
+            throw new IllegalArgumentException("Number of trajectories must be positive.");
+        }
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[trajectories];
+        for (int i = 0; i < trajectories; i++) {
+            streams[i] = root.split();
+        }
+        SampleHistogram[] results = new SampleHistogram[trajectories];
+        trajectoryExecution.forEachChunk(trajectories, (trajectory, from, to) -> {
+            SplittableRandom random = streams[trajectory];
+            StateVector stateVector = runTrajectory(random);
+            results[trajectory] = new ShotSampler(stateVector).sample(shotsPerTrajectory, random.nextLong());
+        });
+        List<SampleHistogram> histograms = new ArrayList<>(trajectories);
+        for (SampleHistogram histogram : results) {
+            histograms.add(histogram);
+        }
+        return SampleHistogram.merge(histograms);
+    }
+
+    public QuantumCircuit getCircuit() {
+        return circuit;
+    }
+}
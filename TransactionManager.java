@@ -0,0 +1,411 @@
+// Copyright (c) Devin Benard Royal - All Rights Reserved.
+// Copyright (c) Devin Benard Royal - 2024
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Snapshot-isolation transactions over a {@link StorageEngine}.
+ *
+ * The engine always holds the newest committed value of every row. Each commit first pushes
+ * the value it replaces onto the row's version chain, tagged with the commit timestamp, and
+ * only then installs the new value, so a reader that looks at the engine and then at the chain
+ * can always rebuild the value as of its snapshot: the before-image of the oldest version
+ * newer than the snapshot, or the engine's value when there is none. Readers take no locks.
+ *
+ * Writers buffer their changes in a private write set. Commit locks the stripes of the keys it
+ * touches in index order, aborts if another transaction committed one of them after its
+ * snapshot (first committer wins), takes a timestamp from an atomic counter and installs the
+ * writes. Timestamps are published in order so a snapshot never sees a commit half applied.
+ * Commits made while no transaction is open skip the version chain, since no snapshot can
+ * need it, and versions no active snapshot can reach are trimmed by a background collector.
+ *
+ * With a {@link WriteAheadLog}, each commit is appended and forced while it holds its row
+ * locks, and only then installed: the log holds every row's commits in install order, and no
+ * reader sees a commit before it is durable. Commits on other rows keep appending meanwhile and
+ * share the fsync; commits on the same rows wait for it. When the log fails the commit throws
+ * UncheckedIOException without installing anything, though its frame may already be on disk and
+ * replay at restart, like any commit whose acknowledgement is lost; every later commit then
+ * throws too, while reads keep serving the rows that were durably committed.
+ */
+class TransactionManager {
+    static final long COLLECT_INTERVAL_MILLIS = 1000;
+    private static final int LOCK_STRIPES = 256;
+    private static final int SPINS_BEFORE_YIELD = 64;
+    private static final long AUTOCOMMIT = Long.MAX_VALUE;
+    // Compared by identity; marks a row deleted in a write set
+    private static final byte[] DELETED = new byte[0];
+    private static final ScheduledExecutorService COLLECTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "version-collector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final StorageEngine storage;
+    private final WriteAheadLog log;
+    private final AtomicLong clock = new AtomicLong();
+    private volatile long published;
+    private final Map<Integer, Version> versions = new ConcurrentHashMap<>();
+    private final Set<Transaction> active = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger open = new AtomicInteger();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final List<RowListener> listeners = new CopyOnWriteArrayList<>();
+
+    TransactionManager(StorageEngine storage) {
+        this(storage, null);
+    }
+
+    /**
+     * @param log recovered log that commits are forced to before they are installed, or null
+     */
+    TransactionManager(StorageEngine storage, WriteAheadLog log) {
+        this.storage = storage;
+        this.log = log;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        Collector collector = new Collector(this);
+        collector.future = COLLECTOR.scheduleWithFixedDelay(collector, COLLECT_INTERVAL_MILLIS,
+                COLLECT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    Transaction begin() {
+        Transaction transaction = new Transaction();
+        // Register before reading the clock: every later commit then versions its rows, and the
+        // collector never trims past this snapshot
+        active.add(transaction);
+        open.incrementAndGet();
+        long snapshot = clock.get();
+        awaitPublished(snapshot);
+        transaction.snapshot = snapshot;
+        return transaction;
+    }
+
+    byte[] read(Transaction transaction, int key) {
+        return read(transaction, key, storage.get(key));
+    }
+
+    void write(Transaction transaction, int key, byte[] value) {
+        transaction.writes.put(key, value);
+    }
+
+    void delete(Transaction transaction, int key) {
+        transaction.writes.put(key, DELETED);
+    }
+
+    /**
+     * Installs the transaction's writes, or throws IllegalStateException and discards them when
+     * another transaction committed one of the same rows after this one's snapshot.
+     */
+    void commit(Transaction transaction) {
+        try {
+            if (!transaction.writes.isEmpty()) {
+                install(transaction.writes, transaction.snapshot);
+            }
+        } finally {
+            close(transaction);
+        }
+    }
+
+    void rollback(Transaction transaction) {
+        close(transaction);
+    }
+
+    /**
+     * Writes outside a transaction commit on their own so that open snapshots keep their view.
+     */
+    void put(int key, byte[] value) {
+        install(Map.of(key, value), AUTOCOMMIT);
+    }
+
+    void remove(int key) {
+        install(Map.of(key, DELETED), AUTOCOMMIT);
+    }
+
+    /**
+     * {@link StorageEngine#scan} over the rows as of the transaction's snapshot, with its own
+     * writes applied. Rows the engine does not hold, because they were deleted after the
+     * snapshot or only exist in the write set, are merged in at their key's position, so a page
+     * may exceed limit; finding them walks every version chain and the write set per page.
+     */
+    long scan(Transaction transaction, long position, long end, IntPredicate keys, int limit,
+            StorageEngine.ScanVisitor visitor) {
+        NavigableMap<Long, Map.Entry<Integer, byte[]>> rows = new TreeMap<>();
+        // Positions the engine returned, visible or not; every other key in range is missing
+        Set<Long> scanned = new HashSet<>();
+        long next = storage.scan(position, end, keys, limit, (at, key, value) -> {
+            scanned.add(at);
+            byte[] row = read(transaction, key, value);
+            if (row != null) {
+                rows.put(at, Map.entry(key, row));
+            }
+        });
+        for (Integer key : versions.keySet()) {
+            addMissing(transaction, key, keys, position, next, scanned, rows);
+        }
+        for (Integer key : transaction.writes.keySet()) {
+            addMissing(transaction, key, keys, position, next, scanned, rows);
+        }
+        for (Map.Entry<Long, Map.Entry<Integer, byte[]>> row : rows.entrySet()) {
+            visitor.visit(row.getKey(), row.getValue().getKey(), row.getValue().getValue());
+        }
+        return next;
+    }
+
+    /**
+     * Drops versions older than every active snapshot.
+     */
+    void collectGarbage() {
+        // Read before the snapshots: a transaction registering meanwhile takes a snapshot at least this
+        long horizon = published;
+        for (Transaction transaction : active) {
+            horizon = Math.min(horizon, transaction.snapshot);
+        }
+        for (Map.Entry<Integer, Version> entry : versions.entrySet()) {
+            Version head = entry.getValue();
+            if (head.timestamp <= horizon) {
+                versions.remove(entry.getKey(), head);
+                continue;
+            }
+            Version version = head;
+            while (version.older != null && version.older.timestamp > horizon) {
+                version = version.older;
+            }
+            version.older = null;
+        }
+    }
+
+    /**
+     * Registers a listener that is told about every committed row change. Until the first one
+     * is registered, commits outside a transaction skip reading the rows they replace.
+     */
+    void addListener(RowListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Hands the committed value of key, if any, to visitor under the row's lock, so no commit
+     * changes the row or notifies listeners about it until the visitor returns.
+     */
+    void withCommittedRow(int key, StorageEngine.RowVisitor visitor) {
+        ReentrantLock lock = locks[stripe(key)];
+        lock.lock();
+        try {
+            byte[] value = storage.get(key);
+            if (value != null) {
+                visitor.visit(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keys the transaction has written or deleted so far.
+     */
+    Set<Integer> writtenKeys(Transaction transaction) {
+        return transaction.writes.keySet();
+    }
+
+    int activeTransactions() {
+        return active.size();
+    }
+
+    private void close(Transaction transaction) {
+        open.decrementAndGet();
+        active.remove(transaction);
+    }
+
+    private void addMissing(Transaction transaction, int key, IntPredicate keys, long from, long to,
+            Set<Long> scanned, Map<Long, Map.Entry<Integer, byte[]>> rows) {
+        if (!keys.test(key)) {
+            return;
+        }
+        long at = storage.positionOf(key);
+        if (at < from || at >= to || !scanned.add(at)) {
+            return;
+        }
+        byte[] row = read(transaction, key);
+        if (row != null) {
+            rows.put(at, Map.entry(key, row));
+        }
+    }
+
+    private static int stripe(int key) {
+        return Math.floorMod(key * 0x9E3779B9, LOCK_STRIPES);
+    }
+
+    private byte[] read(Transaction transaction, int key, byte[] current) {
+        byte[] own = transaction.writes.get(key);
+        if (own != null) {
+            return own == DELETED ? null : own;
+        }
+        return visible(key, current, transaction.snapshot);
+    }
+
+    /**
+     * The value as of snapshot, given the engine's value read before the version chain.
+     */
+    private byte[] visible(int key, byte[] current, long snapshot) {
+        byte[] value = current;
+        for (Version version = versions.get(key); version != null && version.timestamp > snapshot; version = version.older) {
+            value = version.before;
+        }
+        return value;
+    }
+
+    private void install(Map<Integer, byte[]> writes, long snapshot) {
+        int[] stripes = new int[writes.size()];
+        int count = 0;
+        for (int key : writes.keySet()) {
+            stripes[count++] = stripe(key);
+        }
+        stripes = Arrays.stream(stripes).sorted().distinct().toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        long timestamp = 0;
+        try {
+            if (snapshot != AUTOCOMMIT) {
+                for (int key : writes.keySet()) {
+                    Version head = versions.get(key);
+                    if (head != null && head.timestamp > snapshot) {
+                        throw new IllegalStateException("Write conflict on row " + key + "; transaction rolled back.");
+                    }
+                }
+            }
+            if (log != null) {
+                log.awaitDurable(append(writes));
+            }
+            timestamp = clock.incrementAndGet();
+            boolean versioned = snapshot != AUTOCOMMIT || open.get() > 0;
+            boolean notify = !listeners.isEmpty();
+            for (Map.Entry<Integer, byte[]> entry : writes.entrySet()) {
+                int key = entry.getKey();
+                byte[] before = versioned || notify ? storage.get(key) : null;
+                if (versioned) {
+                    Version version = new Version(timestamp, before);
+                    versions.merge(key, version, (older, added) -> {
+                        added.older = older;
+                        return added;
+                    });
+                }
+                byte[] after = entry.getValue() == DELETED ? null : entry.getValue();
+                if (after == null) {
+                    storage.remove(key);
+                } else {
+                    storage.put(key, after);
+                }
+                // Still under the row's lock, so listeners see each row's changes in commit order
+                for (RowListener listener : listeners) {
+                    listener.rowChanged(key, before, after);
+                }
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+            if (timestamp != 0) {
+                publish(timestamp);
+            }
+        }
+    }
+
+    private long append(Map<Integer, byte[]> writes) {
+        int[] keys = new int[writes.size()];
+        byte[][] values = new byte[keys.length][];
+        int i = 0;
+        for (Map.Entry<Integer, byte[]> entry : writes.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i++] = entry.getValue() == DELETED ? null : entry.getValue();
+        }
+        return log.append(keys, values);
+    }
+
+    private void publish(long timestamp) {
+        awaitPublished(timestamp - 1);
+        published = timestamp;
+    }
+
+    /**
+     * Waits for commits up to timestamp to finish installing; they hold no locks we need, so
+     * the wait is short, but yield in case their threads are descheduled.
+     */
+    private void awaitPublished(long timestamp) {
+        for (int spins = 0; published < timestamp; spins++) {
+            if (spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    interface RowListener {
+        /**
+         * before or after is null when the row did not exist before or was deleted.
+         */
+        void rowChanged(int key, byte[] before, byte[] after);
+    }
+
+    static final class Transaction {
+        private volatile long snapshot = Long.MAX_VALUE;
+        private final Map<Integer, byte[]> writes = new HashMap<>();
+
+        long getSnapshot() {
+            return snapshot;
+        }
+    }
+
+    private static final class Version {
+        private final long timestamp;
+        private final byte[] before;
+        private volatile Version older;
+
+        Version(long timestamp, byte[] before) {
+            this.timestamp = timestamp;
+            this.before = before;
+        }
+    }
+
+    /**
+     * Holds its manager weakly so an abandoned replicator's versions can still be reclaimed.
+     */
+    private static final class Collector implements Runnable {
+        private final WeakReference<TransactionManager> manager;
+        private volatile ScheduledFuture<?> future;
+
+        Collector(TransactionManager manager) {
+            this.manager = new WeakReference<>(manager);
+        }
+
+        @Override
+        public void run() {
+            TransactionManager target = manager.get();
+            if (target == null) {
+                ScheduledFuture<?> scheduled = future;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+                return;
+            }
+            target.collectGarbage();
+        }
+    }
+}
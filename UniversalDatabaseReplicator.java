@@ -1,7 +1,17 @@
 // Copyright (c) Devin Benard Royal - All Rights Reserved.
 // Copyright (c) Devin Benard Royal - 2024
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 public abstract class UniversalDatabaseReplicator {
 
@@ -14,7 +24,11 @@ public abstract class UniversalDatabaseReplicator {
             replicator.read(1);
             replicator.update(1, "Updated Row 1");
             replicator.delete(2);
-            replicator.readAll();
+            RowCursor cursor = replicator.openCursor(RowCursor.DEFAULT_BATCH_SIZE);
+            while (cursor.hasNext()) {
+                Map.Entry<Integer, String> row = cursor.next();
+                System.out.println("Row " + row.getKey() + ": " + row.getValue());
+            }
             replicator.beginTransaction();
             replicator.create(3, "Row 3");
             replicator.commitTransaction();
@@ -25,35 +39,269 @@ public abstract class UniversalDatabaseReplicator {
     }
 }
 
-abstract class DatabaseReplicator {
-    protected Map<Integer, String> database = new HashMap<>();
+abstract class DatabaseReplicator implements AutoCloseable {
+    protected final StorageEngine storage;
+    protected final WriteAheadLog log;
+    protected final TransactionManager transactions;
     protected Map<String, String> indexes = new HashMap<>();
-    protected boolean inTransaction = false;
+    protected final Map<String, SecondaryIndex> secondaryIndexes = new ConcurrentHashMap<>();
+    private final ThreadLocal<TransactionManager.Transaction> transaction = new ThreadLocal<>();
+    // Guarded by secondaryIndexes; commits skip the index listener until the first index exists
+    private boolean indexListener;
+
+    protected DatabaseReplicator() {
+        this(new StripedStorageEngine());
+    }
+
+    protected DatabaseReplicator(StorageEngine storage) {
+        this.storage = validate(storage);
+        this.log = null;
+        this.transactions = new TransactionManager(storage);
+    }
+
+    /**
+     * Replays log into storage, then logs every commit to it before the commit returns.
+     */
+    protected DatabaseReplicator(StorageEngine storage, WriteAheadLog log) throws IOException {
+        this.storage = validate(storage);
+        if (log != null) {
+            log.recover(storage);
+        }
+        this.log = log;
+        this.transactions = new TransactionManager(storage, log);
+    }
 
     public abstract void create(int id, String data) throws Exception;
     public abstract String read(int id) throws Exception;
     public abstract void update(int id, String data) throws Exception;
     public abstract void delete(int id) throws Exception;
-    public abstract void readAll() throws Exception;
+    // Returns a lazy cursor over the rows the caller can see rather than printing them
+    public abstract RowCursor readAll() throws Exception;
     public abstract void beginTransaction() throws Exception;
     public abstract void commitTransaction() throws Exception;
     public abstract void rollbackTransaction() throws Exception;
     public abstract void createIndex(String indexName, String data) throws Exception;
+
+    /**
+     * Equality-only index, cheaper to maintain and probe than the ordered one createIndex builds.
+     */
+    public void createHashIndex(String indexName) {
+        if (!addIndex(indexName, SecondaryIndex.hash())) {
+            throw new IllegalArgumentException("Index " + indexName + " already exists.");
+        }
+    }
+
+    /**
+     * Ids, ascending, of rows whose value equals value. Inside a transaction rows are checked
+     * against its snapshot and own writes, but candidates come from the latest committed rows.
+     */
+    public List<Integer> findEqual(String indexName, String value) {
+        return matching(index(indexName).equalTo(value), row -> row.equals(value));
+    }
+
+    /**
+     * Ids, ascending, of rows with from <= value < to; a null bound is open. Needs an ordered index.
+     */
+    public List<Integer> findRange(String indexName, String from, String to) {
+        SecondaryIndex index = index(indexName);
+        if (!index.supportsRange()) {
+            throw new IllegalArgumentException("Index " + indexName + " does not support range queries.");
+        }
+        return matching(index.range(from, to),
+                row -> (from == null || row.compareTo(from) >= 0) && (to == null || row.compareTo(to) < 0));
+    }
+
+    // Transactions are bound to the calling thread, so each client thread can run its own
+    protected void begin() {
+        if (transaction.get() != null) {
+            throw new IllegalStateException("Transaction already in progress.");
+        }
+        transaction.set(transactions.begin());
+    }
+
+    protected void commit() {
+        transactions.commit(endTransaction());
+    }
+
+    protected void rollback() {
+        transactions.rollback(endTransaction());
+    }
+
+    protected boolean inTransaction() {
+        return transaction.get() != null;
+    }
+
+    protected void putRow(int id, String data) {
+        byte[] value = data.getBytes(StandardCharsets.UTF_8);
+        TransactionManager.Transaction current = transaction.get();
+        if (current != null) {
+            transactions.write(current, id, value);
+        } else {
+            transactions.put(id, value);
+        }
+    }
+
+    protected String getRow(int id) {
+        TransactionManager.Transaction current = transaction.get();
+        byte[] value = current != null ? transactions.read(current, id) : storage.get(id);
+        return value == null ? null : decode(value);
+    }
+
+    protected void removeRow(int id) {
+        TransactionManager.Transaction current = transaction.get();
+        if (current != null) {
+            transactions.delete(current, id);
+        } else {
+            transactions.remove(id);
+        }
+    }
+
+    public RowCursor openCursor(int batchSize) {
+        return openCursor(Integer.MIN_VALUE, Integer.MAX_VALUE, batchSize, 0L);
+    }
+
+    /**
+     * Lazily pages through the rows with fromKey <= id <= toKey, starting at resumeToken (0 for
+     * the beginning, or a token from an earlier cursor over the same range). Inside a transaction
+     * the cursor walks its snapshot with its own writes applied, and is only valid until the
+     * transaction ends; otherwise it walks the committed rows.
+     */
+    public RowCursor openCursor(int fromKey, int toKey, int batchSize, long resumeToken) {
+        TransactionManager.Transaction current = transaction.get();
+        if (current == null) {
+            return new RowCursor(storage, fromKey, toKey, batchSize, resumeToken);
+        }
+        return new RowCursor(storage, (position, end, keys, limit, visitor) ->
+                transactions.scan(current, position, end, keys, limit, visitor), fromKey, toKey, batchSize, resumeToken);
+    }
+
+    /**
+     * Committed rows with fromKey <= id <= toKey for bulk export; splits for parallel streams
+     * through StreamSupport.stream(spliterator, true).
+     */
+    public Spliterator<Map.Entry<Integer, String>> spliterator(int fromKey, int toKey, int batchSize) {
+        return RowCursor.spliterator(storage, fromKey, toKey, batchSize);
+    }
+
+    /**
+     * Indexes the current rows and keeps index in step with every later commit. Returns false,
+     * leaving the existing index in place, when indexName is already taken.
+     */
+    protected boolean addIndex(String indexName, SecondaryIndex index) {
+        if (secondaryIndexes.putIfAbsent(indexName, index) != null) {
+            return false;
+        }
+        synchronized (secondaryIndexes) {
+            if (!indexListener) {
+                transactions.addListener(this::indexRow);
+                indexListener = true;
+            }
+        }
+        // Registered before the scan, so rows committed meanwhile reach the index through indexRow.
+        // Each row is re-read under its lock: a value copied earlier may already have been
+        // replaced and unindexed by a commit, and adding it now would leave it in for good
+        storage.forEach((id, ignored) -> transactions.withCommittedRow(id, (key, value) -> index.add(decode(value), key)));
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private static StorageEngine validate(StorageEngine storage) {
+        if (storage == null) {
+            throw new IllegalArgumentException("Storage engine cannot be null.");
+        }
+        return storage;
+    }
+
+    private SecondaryIndex index(String indexName) {
+        SecondaryIndex index = secondaryIndexes.get(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown index " + indexName + ".");
+        }
+        return index;
+    }
+
+    private List<Integer> matching(List<Integer> candidates, Predicate<String> predicate) {
+        Set<Integer> ids = new TreeSet<>();
+        for (int id : candidates) {
+            String row = getRow(id);
+            if (row != null && predicate.test(row)) {
+                ids.add(id);
+            }
+        }
+        TransactionManager.Transaction current = transaction.get();
+        if (current != null) {
+            for (int id : transactions.writtenKeys(current)) {
+                String row = getRow(id);
+                if (row != null && predicate.test(row)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private void indexRow(int id, byte[] before, byte[] after) {
+        String previous = before == null ? null : decode(before);
+        String current = after == null ? null : decode(after);
+        if (Objects.equals(previous, current)) {
+            return;
+        }
+        for (SecondaryIndex index : secondaryIndexes.values()) {
+            // Add before removing so a concurrent lookup finds the row under one value or the other
+            if (current != null) {
+                index.add(current, id);
+            }
+            if (previous != null) {
+                index.remove(previous, id);
+            }
+        }
+    }
+
+    private static String decode(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private TransactionManager.Transaction endTransaction() {
+        TransactionManager.Transaction current = transaction.get();
+        if (current == null) {
+            throw new IllegalStateException("No transaction in progress.");
+        }
+        transaction.remove();
+        return current;
+    }
 }
 
 class DatabaseReplicatorFactory {
     public static DatabaseReplicator createReplicator(String dbType) {
+        return createReplicator(dbType, new StripedStorageEngine());
+    }
+
+    public static DatabaseReplicator createReplicator(String dbType, StorageEngine storage) {
+        try {
+            return createReplicator(dbType, storage, null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreachable without a log.", e);
+        }
+    }
+
+    public static DatabaseReplicator createReplicator(String dbType, StorageEngine storage, WriteAheadLog log) throws IOException {
         switch (dbType) {
             case "MySQL":
-                return new MySQLReplicator();
+                return new MySQLReplicator(storage, log);
             case "PostgreSQL":
-                return new PostgreSQLReplicator();
+                return new PostgreSQLReplicator(storage, log);
             case "MongoDB":
-                return new MongoDBReplicator();
+                return new MongoDBReplicator(storage, log);
             case "Oracle":
-                return new OracleReplicator();
+                return new OracleReplicator(storage, log);
             case "SQLServer":
-                return new SQLServerReplicator();
+                return new SQLServerReplicator(storage, log);
             default:
                 throw new IllegalArgumentException("Unknown database type");
         }
@@ -61,295 +309,345 @@ class DatabaseReplicatorFactory {
 }
 
 class MySQLReplicator extends DatabaseReplicator {
+    MySQLReplicator() {
+    }
+
+    MySQLReplicator(StorageEngine storage) {
+        super(storage);
+    }
+
+    MySQLReplicator(StorageEngine storage, WriteAheadLog log) throws IOException {
+        super(storage, log);
+    }
+
     @Override
     public void create(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("MySQL: Created row " + id + " with data: " + data);
     }
 
     @Override
     public String read(int id) {
-        String data = database.get(id);
+        String data = getRow(id);
         System.out.println("MySQL: Read row " + id + " with data: " + data);
         return data;
     }
 
     @Override
     public void update(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("MySQL: Updated row " + id + " with data: " + data);
     }
 
     @Override
     public void delete(int id) {
-        database.remove(id);
+        removeRow(id);
         System.out.println("MySQL: Deleted row " + id);
     }
 
     @Override
-    public void readAll() {
+    public RowCursor readAll() {
         System.out.println("MySQL: Reading all rows");
-        for (Map.Entry<Integer, String> entry : database.entrySet()) {
-            System.out.println("Row " + entry.getKey() + ": " + entry.getValue());
-        }
+        return openCursor(RowCursor.DEFAULT_BATCH_SIZE);
     }
 
     @Override
     public void beginTransaction() {
-        inTransaction = true;
+        begin();
         System.out.println("MySQL: Transaction started");
     }
 
     @Override
     public void commitTransaction() {
-        inTransaction = false;
+        commit();
         System.out.println("MySQL: Transaction committed");
     }
 
     @Override
     public void rollbackTransaction() {
-        inTransaction = false;
+        rollback();
         System.out.println("MySQL: Transaction rolled back");
     }
 
     @Override
     public void createIndex(String indexName, String data) {
+        addIndex(indexName, SecondaryIndex.ordered());
         indexes.put(indexName, data);
         System.out.println("MySQL: Created index " + indexName + " for data: " + data);
     }
 }
 
 class PostgreSQLReplicator extends DatabaseReplicator {
+    PostgreSQLReplicator() {
+    }
+
+    PostgreSQLReplicator(StorageEngine storage) {
+        super(storage);
+    }
+
+    PostgreSQLReplicator(StorageEngine storage, WriteAheadLog log) throws IOException {
+        super(storage, log);
+    }
+
     @Override
     public void create(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("PostgreSQL: Created row " + id + " with data: " + data);
     }
 
     @Override
     public String read(int id) {
-        String data = database.get(id);
+        String data = getRow(id);
         System.out.println("PostgreSQL: Read row " + id + " with data: " + data);
         return data;
     }
 
     @Override
     public void update(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("PostgreSQL: Updated row " + id + " with data: " + data);
     }
 
     @Override
     public void delete(int id) {
-        database.remove(id);
+        removeRow(id);
         System.out.println("PostgreSQL: Deleted row " + id);
     }
 
     @Override
-    public void readAll() {
+    public RowCursor readAll() {
         System.out.println("PostgreSQL: Reading all rows");
-        for (Map.Entry<Integer, String> entry : database.entrySet()) {
-            System.out.println("Row " + entry.getKey() + ": " + entry.getValue());
-        }
+        return openCursor(RowCursor.DEFAULT_BATCH_SIZE);
     }
 
     @Override
     public void beginTransaction() {
-        inTransaction = true;
+        begin();
         System.out.println("PostgreSQL: Transaction started");
     }
 
     @Override
     public void commitTransaction() {
-        inTransaction = false;
+        commit();
         System.out.println("PostgreSQL: Transaction committed");
     }
 
     @Override
     public void rollbackTransaction() {
-        inTransaction = false;
+        rollback();
         System.out.println("PostgreSQL: Transaction rolled back");
     }
 
     @Override
     public void createIndex(String indexName, String data) {
+        addIndex(indexName, SecondaryIndex.ordered());
         indexes.put(indexName, data);
         System.out.println("PostgreSQL: Created index " + indexName + " for data: " + data);
     }
 }
 
 class MongoDBReplicator extends DatabaseReplicator {
+    MongoDBReplicator() {
+    }
+
+    MongoDBReplicator(StorageEngine storage) {
+        super(storage);
+    }
+
+    MongoDBReplicator(StorageEngine storage, WriteAheadLog log) throws IOException {
+        super(storage, log);
+    }
+
     @Override
     public void create(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("MongoDB: Created document " + id + " with data: " + data);
     }
 
     @Override
     public String read(int id) {
-        String data = database.get(id);
+        String data = getRow(id);
         System.out.println("MongoDB: Read document " + id + " with data: " + data);
         return data;
     }
 
     @Override
     public void update(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("MongoDB: Updated document " + id + " with data: " + data);
     }
 
     @Override
     public void delete(int id) {
-        database.remove(id);
+        removeRow(id);
         System.out.println("MongoDB: Deleted document " + id);
     }
 
     @Override
-    public void readAll() {
+    public RowCursor readAll() {
         System.out.println("MongoDB: Reading all documents");
-        for (Map.Entry<Integer, String> entry : database.entrySet()) {
-            System.out.println("Document " + entry.getKey() + ": " + entry.getValue());
-        }
+        return openCursor(RowCursor.DEFAULT_BATCH_SIZE);
     }
 
     @Override
     public void beginTransaction() {
-        inTransaction = true;
+        begin();
         System.out.println("MongoDB: Transaction started");
     }
 
     @Override
     public void commitTransaction() {
-        inTransaction = false;
+        commit();
         System.out.println("MongoDB: Transaction committed");
     }
 
     @Override
     public void rollbackTransaction() {
-        inTransaction = false;
+        rollback();
         System.out.println("MongoDB: Transaction rolled back");
     }
 
     @Override
     public void createIndex(String indexName, String data) {
+        addIndex(indexName, SecondaryIndex.ordered());
         indexes.put(indexName, data);
         System.out.println("MongoDB: Created index " + indexName + " for data: " + data);
     }
 }
 
 class OracleReplicator extends DatabaseReplicator {
+    OracleReplicator() {
+    }
+
+    OracleReplicator(StorageEngine storage) {
+        super(storage);
+    }
+
+    OracleReplicator(StorageEngine storage, WriteAheadLog log) throws IOException {
+        super(storage, log);
+    }
+
     @Override
     public void create(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("Oracle: Created row " + id + " with data: " + data);
     }
 
     @Override
     public String read(int id) {
-        String data = database.get(id);
+        String data = getRow(id);
         System.out.println("Oracle: Read row " + id + " with data: " + data);
         return data;
     }
 
     @Override
     public void update(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("Oracle: Updated row " + id + " with data: " + data);
     }
 
     @Override
     public void delete(int id) {
-        database.remove(id);
+        removeRow(id);
         System.out.println("Oracle: Deleted row " + id);
     }
 
     @Override
-    public void readAll() {
+    public RowCursor readAll() {
         System.out.println("Oracle: Reading all rows");
-        for (Map.Entry<Integer, String> entry : database.entrySet()) {
-            System.out.println("Row " + entry.getKey() + ": " + entry.getValue());
-        }
+        return openCursor(RowCursor.DEFAULT_BATCH_SIZE);
     }
 
     @Override
     public void beginTransaction() {
-        inTransaction = true;
+        begin();
         System.out.println("Oracle: Transaction started");
     }
 
     @Override
     public void commitTransaction() {
-        inTransaction = false;
+        commit();
         System.out.println("Oracle: Transaction committed");
     }
 
     @Override
     public void rollbackTransaction() {
-        inTransaction = false;
+        rollback();
         System.out.println("Oracle: Transaction rolled back");
     }
 
     @Override
     public void createIndex(String indexName, String data) {
+        addIndex(indexName, SecondaryIndex.ordered());
         indexes.put(indexName, data);
         System.out.println("Oracle: Created index " + indexName + " for data: " + data);
     }
 }
 
 class SQLServerReplicator extends DatabaseReplicator {
+    SQLServerReplicator() {
+    }
+
+    SQLServerReplicator(StorageEngine storage) {
+        super(storage);
+    }
+
+    SQLServerReplicator(StorageEngine storage, WriteAheadLog log) throws IOException {
+        super(storage, log);
+    }
+
     @Override
     public void create(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("SQLServer: Created row " + id + " with data: " + data);
     }
 
     @Override
     public String read(int id) {
-        String data = database.get(id);
+        String data = getRow(id);
         System.out.println("SQLServer: Read row " + id + " with data: " + data);
         return data;
     }
 
     @Override
     public void update(int id, String data) {
-        database.put(id, data);
+        putRow(id, data);
         System.out.println("SQLServer: Updated row " + id + " with data: " + data);
     }
 
     @Override
     public void delete(int id) {
-        database.remove(id);
+        removeRow(id);
         System.out.println("SQLServer: Deleted row " + id);
     }
 
     @Override
-    public void readAll() {
+    public RowCursor readAll() {
         System.out.println("SQLServer: Reading all rows");
-        for (Map.Entry<Integer, String> entry : database.entrySet()) {
-            System.out.println("Row " + entry.getKey() + ": " + entry.getValue());
-        }
+        return openCursor(RowCursor.DEFAULT_BATCH_SIZE);
     }
 
     @Override
     public void beginTransaction() {
-        inTransaction = true;
+        begin();
         System.out.println("SQLServer: Transaction started");
     }
 
     @Override
     public void commitTransaction() {
-        inTransaction = false;
+        commit();
         System.out.println("SQLServer: Transaction committed");
     }
 
     @Override
     public void rollbackTransaction() {
-        inTransaction = false;
+        rollback();
         System.out.println("SQLServer: Transaction rolled back");
     }
 
     @Override
     public void createIndex(String indexName, String data) {
+        addIndex(indexName, SecondaryIndex.ordered());
         indexes.put(indexName, data);
         System.out.println("SQLServer: Created index " + indexName + " for data: " + data);
     }
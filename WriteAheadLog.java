@@ -0,0 +1,295 @@
+// Copyright (c) Devin Benard Royal - All Rights Reserved.
+// Copyright (c) Devin Benard Royal - 2024
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only redo log for a {@link StorageEngine}.
+ *
+ * Every commit is one frame: payload length, CRC32C of the payload, then the payload, a row
+ * count followed by (key, value length, value bytes) per row with length -1 for a delete, so a
+ * multi-row commit is replayed all or nothing. Appends only copy the frame into a memory buffer;
+ * a flusher thread waits up to the linger for more commits to join, writes the whole batch and
+ * forces it with a single fsync, then releases every writer the batch covered (group commit).
+ *
+ * {@link #recover(StorageEngine)} replays the frames into the engine at startup and truncates a
+ * torn or corrupt tail left by a crash; the log accepts appends only after that.
+ */
+class WriteAheadLog implements Closeable {
+    static final long DEFAULT_LINGER_MICROS = 200;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INITIAL_BUFFER_BYTES = 1 << 16;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long lingerNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingData = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private long appended = -1;
+    private long durable;
+    private boolean closed;
+    private IOException failure;
+    private Thread flusher;
+
+    WriteAheadLog(Path path) throws IOException {
+        this(path, DEFAULT_LINGER_MICROS);
+    }
+
+    /**
+     * @param lingerMicros how long a batch waits for more commits before it is forced; 0 forces
+     *                     whatever arrived while the previous fsync ran
+     */
+    WriteAheadLog(Path path, long lingerMicros) throws IOException {
+        if (lingerMicros < 0) {
+            throw new IllegalArgumentException("Linger cannot be negative.");
+        }
+        this.path = path;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Replays every intact frame into storage, cuts the log after the last one and starts
+     * accepting appends. Returns the number of commits replayed.
+     */
+    long recover(StorageEngine storage) throws IOException {
+        lock.lock();
+        try {
+            if (appended >= 0) {
+                throw new IllegalStateException("Log has already been recovered.");
+            }
+        } finally {
+            lock.unlock();
+        }
+        long size = channel.size();
+        long position = 0;
+        long commits = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        CRC32C crc = new CRC32C();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            if (length < Integer.BYTES || length > size - position - HEADER_BYTES) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != header.getInt(Integer.BYTES)) {
+                break;
+            }
+            replay(payload, storage);
+            position += HEADER_BYTES + length;
+            commits++;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        lock.lock();
+        try {
+            appended = position;
+            durable = position;
+        } finally {
+            lock.unlock();
+        }
+        flusher = new Thread(this::flushLoop, "wal-flusher " + path.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+        return commits;
+    }
+
+    /**
+     * Queues one commit; a null value deletes its key. Returns the log position that
+     * {@link #awaitDurable(long)} waits for.
+     */
+    long append(int[] keys, byte[][] values) {
+        int length = Integer.BYTES;
+        for (byte[] value : values) {
+            length += 2 * Integer.BYTES + (value == null ? 0 : value.length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.putInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            payload.putInt(keys[i]);
+            if (values[i] == null) {
+                payload.putInt(-1);
+            } else {
+                payload.putInt(values[i].length).put(values[i]);
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload.array(), 0, length);
+
+        lock.lock();
+        try {
+            checkOpen();
+            if (pending.remaining() < HEADER_BYTES + length) {
+                pending = grow(pending, HEADER_BYTES + length);
+            }
+            pending.putInt(length).putInt((int) crc.getValue()).put(payload.array(), 0, length);
+            appended += HEADER_BYTES + length;
+            pendingData.signal();
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until everything up to position has been forced to disk.
+     */
+    void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durable < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log failed.", failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes what is queued and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingData.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long end;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    pendingData.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (lingerNanos > 0) {
+                LockSupport.parkNanos(lingerNanos);
+            }
+            lock.lock();
+            try {
+                ByteBuffer batch = pending;
+                pending = flushing;
+                flushing = batch;
+                end = appended;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                flushing.flip();
+                while (flushing.hasRemaining()) {
+                    channel.write(flushing);
+                }
+                channel.force(false);
+                flushing.clear();
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                durable = end;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (appended < 0) {
+            throw new IllegalStateException("Log must be recovered before it is appended to.");
+        }
+        if (closed) {
+            throw new IllegalStateException("Log is closed.");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed.", failure);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of log.");
+            }
+        }
+    }
+
+    private static void replay(ByteBuffer payload, StorageEngine storage) {
+        payload.flip();
+        int count = payload.getInt();
+        for (int i = 0; i < count; i++) {
+            int key = payload.getInt();
+            int length = payload.getInt();
+            if (length < 0) {
+                storage.remove(key);
+            } else {
+                byte[] value = new byte[length];
+                payload.get(value);
+                storage.put(key, value);
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < needed) {
+            capacity *= 2;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        return larger.put(buffer);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing.benchmarks;
+
+import com.quantumcomputing.ExampleOracle;
+import com.quantumcomputing.GroverSearch;
+import com.quantumcomputing.ParallelExecution;
+import com.quantumcomputing.ShorsAlgorithm;
+import com.quantumcomputing.StateVector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end runs: a full Grover search with the optimal iteration count, and Shor's
+ * pipeline for semiprimes of increasing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AlgorithmBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class GroverRun {
+        @Param({"10", "14", "18", "22"})
+        public int qubits;
+
+        @Param({"1", "4"})
+        public int threads;
+
+        GroverSearch search;
+        ParallelExecution parallelExecution;
+        int iterations;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            search = new GroverSearch(qubits, new ExampleOracle((1 << qubits) / 3));
+            search.initialize();
+            iterations = (int) Math.floor(Math.PI / 4 * Math.sqrt(1 << qubits));
+            for (int i = 0; i < iterations; i++) {
+                search.addGroverIteration();
+            }
+            if (threads > 1) {
+                parallelExecution = new ParallelExecution(threads);
+                search.getCircuit().setParallelExecution(parallelExecution);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (parallelExecution != null) {
+                parallelExecution.close();
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ShorRun {
+        @Param({"15", "221", "3233", "62773"})
+        public int numberToFactor;
+
+        // Fixed so every fork runs the same modular-exponentiation cycle; coprime to each N above
+        @Param({"2"})
+        public int base;
+
+        ShorsAlgorithm shor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            shor = new ShorsAlgorithm(numberToFactor);
+            shor.initialize(base);
+        }
+    }
+
+    @Benchmark
+    public StateVector grover(GroverRun run, SimulatorCounters counters) {
+        StateVector state = StateVector.allocate(run.qubits);
+        run.search.execute(state);
+        counters.record(run.qubits + 2L * run.iterations, state.getDimension());
+        return state;
+    }
+
+    @Benchmark
+    public int shor(ShorRun run) {
+        return run.shor.execute();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing.benchmarks;
+
+import com.quantumcomputing.CNOTGate;
+import com.quantumcomputing.ExampleOracle;
+import com.quantumcomputing.GroverDiffusionOperator;
+import com.quantumcomputing.HadamardGate;
+import com.quantumcomputing.ParallelExecution;
+import com.quantumcomputing.PauliZGate;
+import com.quantumcomputing.QFTGate;
+import com.quantumcomputing.QuantumCircuit;
+import com.quantumcomputing.QuantumGate;
+import com.quantumcomputing.QuantumModularExponentiation;
+import com.quantumcomputing.StateVector;
+import com.quantumcomputing.ToffoliGate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-gate and gate-mix throughput on a heap state vector.
+ *
+ * Run with the GC profiler to get the allocation rate alongside the scores:
+ * java -jar benchmarks/target/benchmarks.jar GateBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class GateBenchmark {
+    private static final int MIX_LENGTH = 64;
+
+    @Param({"10", "14", "18", "22", "26"})
+    public int qubits;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"single", "entangling", "mixed"})
+    public String gateMix;
+
+    private StateVector state;
+    private ParallelExecution parallelExecution;
+    private QuantumGate[] hadamards;
+    private QuantumGate diffusion;
+    private QuantumGate qft;
+    private QuantumGate modularExponentiation;
+    private QuantumCircuit mixCircuit;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        state = StateVector.uniform(qubits);
+        if (threads > 1) {
+            parallelExecution = new ParallelExecution(threads);
+            state.setParallelExecution(parallelExecution);
+        }
+        hadamards = new QuantumGate[qubits];
+        for (int q = 0; q < qubits; q++) {
+            hadamards[q] = new HadamardGate(q);
+        }
+        diffusion = new GroverDiffusionOperator();
+        qft = new QFTGate(qubits);
+        // 2 is coprime to 2^n - 1, so this is the in-place permutation path
+        modularExponentiation = new QuantumModularExponentiation(2, 1, (1 << qubits) - 1);
+        mixCircuit = mixCircuit(qubits, gateMix);
+        mixCircuit.setParallelExecution(parallelExecution);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (parallelExecution != null) {
+            parallelExecution.close();
+        }
+    }
+
+    @Benchmark
+    public StateVector hadamardLayer(SimulatorCounters counters) {
+        for (QuantumGate hadamard : hadamards) {
+            hadamard.apply(state);
+        }
+        counters.record(qubits, state.getDimension());
+        return state;
+    }
+
+    @Benchmark
+    public StateVector groverDiffusion(SimulatorCounters counters) {
+        diffusion.apply(state);
+        counters.record(1, state.getDimension());
+        return state;
+    }
+
+    @Benchmark
+    public StateVector qft(SimulatorCounters counters) {
+        qft.apply(state);
+        counters.record(1, state.getDimension());
+        return state;
+    }
+
+    @Benchmark
+    public StateVector modularExponentiation(SimulatorCounters counters) {
+        modularExponentiation.apply(state);
+        counters.record(1, state.getDimension());
+        return state;
+    }
+
+    @Benchmark
+    public StateVector gateMix(SimulatorCounters counters) {
+        mixCircuit.execute(state);
+        counters.record(MIX_LENGTH, state.getDimension());
+        return state;
+    }
+
+    /**
+     * Fixed-seed random circuit: "single" uses only one-qubit gates, "entangling" only CNOT and
+     * Toffoli, "mixed" draws from both plus an oracle call. Fusion is left off so the
+     * kernels themselves are measured.
+     */
+    static QuantumCircuit mixCircuit(int qubits, String gateMix) {
+        Random random = new Random(42);
+        QuantumCircuit circuit = new QuantumCircuit(qubits);
+        for (int i = 0; i < MIX_LENGTH; i++) {
+            int a = random.nextInt(qubits);
+            int b = (a + 1 + random.nextInt(qubits - 1)) % qubits;
+            int c = (b + 1) % qubits == a ? (b + 2) % qubits : (b + 1) % qubits;
+            int kind;
+            switch (gateMix) {
+                case "single":
+                    kind = random.nextInt(2);
+                    break;
+                case "entangling":
+                    kind = 2 + random.nextInt(2);
+                    break;
+                default:
+                    kind = random.nextInt(5);
+                    break;
+            }
+            switch (kind) {
+                case 0:
+                    circuit.addGate(new HadamardGate(a));
+                    break;
+                case 1:
+                    circuit.addGate(new PauliZGate(a));
+                    break;
+                case 2:
+                    circuit.addGate(new CNOTGate(a, b));
+                    break;
+                case 3:
+                    circuit.addGate(new ToffoliGate(a, b, c));
+                    break;
+                default:
+                    circuit.addGate(new ExampleOracle(random.nextInt(1 << qubits)));
+                    break;
+            }
+        }
+        return circuit;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing.benchmarks;
+
+import com.quantumcomputing.GroverDiffusionOperator;
+import com.quantumcomputing.HeapStateVector;
+import com.quantumcomputing.StateVector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scalar against Vector API kernels. Each kernel is measured twice in separate forks: once
+ * with jdk.incubator.vector resolved, and once with the SIMD path switched off, so the
+ * two scores differ only in the kernel implementation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+    private static final String VECTOR = "--add-modules=jdk.incubator.vector";
+    private static final String SCALAR = "-Dcom.quantumcomputing.vectorKernels=false";
+    private static final double[] HADAMARD = {
+        1 / Math.sqrt(2), 0, 1 / Math.sqrt(2), 0,
+        1 / Math.sqrt(2), 0, -1 / Math.sqrt(2), 0
+    };
+
+    @Param({"10", "16", "22", "26"})
+    public int qubits;
+
+    private StateVector state;
+    private GroverDiffusionOperator diffusion;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        state = new HeapStateVector(qubits);
+        state.fill(1.0 / Math.sqrt(state.getDimension()), 0.0);
+        diffusion = new GroverDiffusionOperator();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR, "-Xmx4g"})
+    public StateVector hadamardLayerVector(SimulatorCounters counters) {
+        return hadamardLayer(counters);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {SCALAR, "-Xmx4g"})
+    public StateVector hadamardLayerScalar(SimulatorCounters counters) {
+        return hadamardLayer(counters);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR, "-Xmx4g"})
+    public StateVector controlledLayerVector(SimulatorCounters counters) {
+        return controlledLayer(counters);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {SCALAR, "-Xmx4g"})
+    public StateVector controlledLayerScalar(SimulatorCounters counters) {
+        return controlledLayer(counters);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {VECTOR, "-Xmx4g"})
+    public StateVector diffusionVector(SimulatorCounters counters) {
+        diffusion.apply(state);
+        counters.record(1, state.getDimension());
+        return state;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {SCALAR, "-Xmx4g"})
+    public StateVector diffusionScalar(SimulatorCounters counters) {
+        diffusion.apply(state);
+        counters.record(1, state.getDimension());
+        return state;
+    }
+
+    private StateVector hadamardLayer(SimulatorCounters counters) {
+        for (int q = 0; q < qubits; q++) {
+            state.applySingleQubit(q, HADAMARD);
+        }
+        counters.record(qubits, state.getDimension());
+        return state;
+    }
+
+    /**
+     * Controlled-H with the control on the highest qubit, so the SIMD path sees a control
+     * mask as well as every target.
+     */
+    private StateVector controlledLayer(SimulatorCounters counters) {
+        long control = 1L << (qubits - 1);
+        for (int q = 0; q < qubits - 1; q++) {
+            state.applyControlled(control, q, HADAMARD);
+        }
+        counters.record(qubits - 1, state.getDimension());
+        return state;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing.benchmarks;
+
+import com.quantumcomputing.Measurement;
+import com.quantumcomputing.ParallelExecution;
+import com.quantumcomputing.SampleHistogram;
+import com.quantumcomputing.StateVector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-shot measurement and batched sampling. Each sample call rebuilds its alias table,
+ * so the score covers table construction plus the shots.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class MeasurementBenchmark {
+    @Param({"10", "14", "18", "22", "26"})
+    public int qubits;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"1024", "1048576"})
+    public int shots;
+
+    private StateVector state;
+    private ParallelExecution parallelExecution;
+    private Measurement measurement;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        state = StateVector.uniform(qubits);
+        if (threads > 1) {
+            parallelExecution = new ParallelExecution(threads);
+            state.setParallelExecution(parallelExecution);
+        }
+        measurement = new Measurement();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (parallelExecution != null) {
+            parallelExecution.close();
+        }
+    }
+
+    @Benchmark
+    public long measure(SimulatorCounters counters) {
+        counters.record(1, state.getDimension());
+        return measurement.measure(state);
+    }
+
+    @Benchmark
+    public SampleHistogram sample(SimulatorCounters counters) {
+        counters.record(1, state.getDimension());
+        return measurement.sample(state, shots, seed++, parallelExecution);
+    }
+}
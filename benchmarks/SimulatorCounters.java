@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary throughput counters. JMH reports each public field as a rate next to the primary
+ * ops/s score, so every benchmark shows gates/s and amplitudes/s as well.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class SimulatorCounters {
+    public long gates;
+    public long amplitudes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        gates = 0;
+        amplitudes = 0;
+    }
+
+    void record(long gateCount, long dimension) {
+        gates += gateCount;
+        amplitudes += gateCount * dimension;
+    }
+}
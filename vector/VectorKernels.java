@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2024 Devin B. Royal. All Rights Reserved.
+ */
+
+package com.quantumcomputing;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of the heap kernels on interleaved (re, im) arrays, built on the incubating
+ * Vector API. Kept out of the main sources so they compile without the module; build with
+ *
+ * javac --add-modules jdk.incubator.vector -d classes *.java vector/*.java
+ *
+ * and run with --add-modules jdk.incubator.vector. {@link HeapKernels#load()} instantiates
+ * this class by reflection; without it the scalar loops run.
+ *
+ * A complex scalar u times an interleaved vector v is ur * v + sign * ui * swap(v), where
+ * swap exchanges each (re, im) pair and sign is (-1, +1, -1, +1, ...).
+ */
+final class VectorKernels implements HeapKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LENGTH = SPECIES.length();
+    // Amplitudes per vector
+    private static final int SPAN = LENGTH >> 1;
+    private static final VectorShuffle<Double> SWAP = VectorShuffle.fromOp(SPECIES, i -> i ^ 1);
+    private static final DoubleVector SIGN = DoubleVector.fromArray(SPECIES, alternatingSigns(), 0);
+
+    VectorKernels() {
+        if (SPAN < 2) {
+            throw new IllegalStateException("Preferred vector shape holds fewer than two amplitudes.");
+        }
+    }
+
+    /**
+     * Each vector must cover amplitudes that all sit on the same side of the target bit and
+     * share their control bits.
+     */
+    @Override
+    public boolean supports(int target, int controlMask) {
+        return SPAN > 1 && (1 << target) >= SPAN && (controlMask & (SPAN - 1)) == 0;
+    }
+
+    @Override
+    public void applyControlled(double[] a, int controlMask, int target, double[] matrix, int from, int to) {
+        double u00r = matrix[0], u00i = matrix[1], u01r = matrix[2], u01i = matrix[3];
+        double u10r = matrix[4], u10i = matrix[5], u11r = matrix[6], u11i = matrix[7];
+        int stride = 1 << target;
+
+        int k = from;
+        while (k < to) {
+            int runEnd = Math.min(to, (k | (stride - 1)) + 1);
+            int i = StateVector.insertZeroBit(k, target);
+            // Scalar head until i is aligned to a whole vector
+            while (k < runEnd && (i & (SPAN - 1)) != 0) {
+                scalarPair(a, controlMask, i, stride, matrix);
+                k++;
+                i++;
+            }
+            for (; k + SPAN <= runEnd; k += SPAN, i += SPAN) {
+                if ((i & controlMask) != controlMask) {
+                    continue;
+                }
+                int p = i << 1;
+                int q = (i + stride) << 1;
+                DoubleVector va = DoubleVector.fromArray(SPECIES, a, p);
+                DoubleVector vb = DoubleVector.fromArray(SPECIES, a, q);
+                DoubleVector sa = va.rearrange(SWAP).mul(SIGN);
+                DoubleVector sb = vb.rearrange(SWAP).mul(SIGN);
+                va.mul(u00r).add(sa.mul(u00i)).add(vb.mul(u01r)).add(sb.mul(u01i)).intoArray(a, p);
+                va.mul(u10r).add(sa.mul(u10i)).add(vb.mul(u11r)).add(sb.mul(u11i)).intoArray(a, q);
+            }
+            for (; k < runEnd; k++, i++) {
+                scalarPair(a, controlMask, i, stride, matrix);
+            }
+        }
+    }
+
+    @Override
+    public double[] sum(double[] a, int from, int to) {
+        int p = from << 1;
+        int end = to << 1;
+        DoubleVector accumulator = DoubleVector.zero(SPECIES);
+        for (; p + LENGTH <= end; p += LENGTH) {
+            accumulator = accumulator.add(DoubleVector.fromArray(SPECIES, a, p));
+        }
+        double[] lanes = accumulator.toArray();
+        double re = 0.0;
+        double im = 0.0;
+        for (int lane = 0; lane < LENGTH; lane += 2) {
+            re += lanes[lane];
+            im += lanes[lane + 1];
+        }
+        for (; p < end; p += 2) {
+            re += a[p];
+            im += a[p + 1];
+        }
+        return new double[] {re, im};
+    }
+
+    @Override
+    public void reflect(double[] a, double twiceRe, double twiceIm, int from, int to) {
+        double[] pattern = new double[LENGTH];
+        for (int lane = 0; lane < LENGTH; lane += 2) {
+            pattern[lane] = twiceRe;
+            pattern[lane + 1] = twiceIm;
+        }
+        DoubleVector twice = DoubleVector.fromArray(SPECIES, pattern, 0);
+        int p = from << 1;
+        int end = to << 1;
+        for (; p + LENGTH <= end; p += LENGTH) {
+            twice.sub(DoubleVector.fromArray(SPECIES, a, p)).intoArray(a, p);
+        }
+        for (; p < end; p += 2) {
+            a[p] = twiceRe - a[p];
+            a[p + 1] = twiceIm - a[p + 1];
+        }
+    }
+
+    @Override
+    public void rotateLanes(double[] re, double[] im, int p, int q, int width, double[] m) {
+        double u00r = m[0], u00i = m[1], u01r = m[2], u01i = m[3];
+        double u10r = m[4], u10i = m[5], u11r = m[6], u11i = m[7];
+        int l = 0;
+        for (; l < SPECIES.loopBound(width); l += LENGTH) {
+            DoubleVector ar = DoubleVector.fromArray(SPECIES, re, p + l);
+            DoubleVector ai = DoubleVector.fromArray(SPECIES, im, p + l);
+            DoubleVector br = DoubleVector.fromArray(SPECIES, re, q + l);
+            DoubleVector bi = DoubleVector.fromArray(SPECIES, im, q + l);
+            ar.mul(u00r).sub(ai.mul(u00i)).add(br.mul(u01r)).sub(bi.mul(u01i)).intoArray(re, p + l);
+            ai.mul(u00r).add(ar.mul(u00i)).add(bi.mul(u01r)).add(br.mul(u01i)).intoArray(im, p + l);
+            ar.mul(u10r).sub(ai.mul(u10i)).add(br.mul(u11r)).sub(bi.mul(u11i)).intoArray(re, q + l);
+            ai.mul(u10r).add(ar.mul(u10i)).add(bi.mul(u11r)).add(br.mul(u11i)).intoArray(im, q + l);
+        }
+        for (; l < width; l++) {
+            double ar = re[p + l], ai = im[p + l];
+            double br = re[q + l], bi = im[q + l];
+            re[p + l] = u00r * ar - u00i * ai + u01r * br - u01i * bi;
+            im[p + l] = u00r * ai + u00i * ar + u01r * bi + u01i * br;
+            re[q + l] = u10r * ar - u10i * ai + u11r * br - u11i * bi;
+            im[q + l] = u10r * ai + u10i * ar + u11r * bi + u11i * br;
+        }
+    }
+
+    @Override
+    public void accumulateLanes(double[] re, double[] im, int target, double[] inRe, double[] inIm, int input,
+            int width, double mr, double mi) {
+        int l = 0;
+        for (; l < SPECIES.loopBound(width); l += LENGTH) {
+            DoubleVector ar = DoubleVector.fromArray(SPECIES, inRe, input + l);
+            DoubleVector ai = DoubleVector.fromArray(SPECIES, inIm, input + l);
+            DoubleVector.fromArray(SPECIES, re, target + l).add(ar.mul(mr).sub(ai.mul(mi))).intoArray(re, target + l);
+            DoubleVector.fromArray(SPECIES, im, target + l).add(ai.mul(mr).add(ar.mul(mi))).intoArray(im, target + l);
+        }
+        for (; l < width; l++) {
+            double ar = inRe[input + l];
+            double ai = inIm[input + l];
+            re[target + l] += mr * ar - mi * ai;
+            im[target + l] += mr * ai + mi * ar;
+        }
+    }
+
+    @Override
+    public void addLanes(double[] sum, double[] a, int p, int width) {
+        int l = 0;
+        for (; l < SPECIES.loopBound(width); l += LENGTH) {
+            DoubleVector.fromArray(SPECIES, sum, l).add(DoubleVector.fromArray(SPECIES, a, p + l)).intoArray(sum, l);
+        }
+        for (; l < width; l++) {
+            sum[l] += a[p + l];
+        }
+    }
+
+    @Override
+    public void reflectLanes(double[] twice, double[] a, int p, int width) {
+        int l = 0;
+        for (; l < SPECIES.loopBound(width); l += LENGTH) {
+            DoubleVector.fromArray(SPECIES, twice, l).sub(DoubleVector.fromArray(SPECIES, a, p + l)).intoArray(a, p + l);
+        }
+        for (; l < width; l++) {
+            a[p + l] = twice[l] - a[p + l];
+        }
+    }
+
+    private static void scalarPair(double[] a, int controlMask, int i, int stride, double[] m) {
+        if ((i & controlMask) != controlMask) {
+            return;
+        }
+        int p = i << 1;
+        int q = (i + stride) << 1;
+        double ar = a[p], ai = a[p + 1];
+        double br = a[q], bi = a[q + 1];
+        a[p] = m[0] * ar - m[1] * ai + m[2] * br - m[3] * bi;
+        a[p + 1] = m[0] * ai + m[1] * ar + m[2] * bi + m[3] * br;
+        a[q] = m[4] * ar - m[5] * ai + m[6] * br - m[7] * bi;
+        a[q + 1] = m[4] * ai + m[5] * ar + m[6] * bi + m[7] * br;
+    }
+
+    private static double[] alternatingSigns() {
+        double[] signs = new double[LENGTH];
+        for (int lane = 0; lane < LENGTH; lane++) {
+            signs[lane] = (lane & 1) == 0 ? -1.0 : 1.0;
+        }
+        return signs;
+    }
+}